@@ -6,10 +6,21 @@ import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import org.firstinspires.ftc.robotcore.external.ClassFactory;
 import org.firstinspires.ftc.robotcore.external.navigation.VuforiaLocalizer;
 import org.firstinspires.ftc.robotcore.external.tfod.TFObjectDetector;
+import org.whitneyrobotics.ftc.teamcode.lib.control.LoopClock;
+import org.whitneyrobotics.ftc.teamcode.lib.control.TunableRegistry;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.FollowerConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathCache;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathChain;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathPreparationService;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePathGenerationConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.util.DataToolsLite;
+import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.util.SimpleTimer;
+import org.whitneyrobotics.ftc.teamcode.lib.util.TunedGains;
 import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImpl;
 
 @Autonomous (name="WHS Freight Frenzy Auto")
@@ -58,6 +69,18 @@ public class AutoOp extends OpMode {
     Position[] warehouse = new Position[2];
     Position[] storageUnitPositions = new Position[2];
 
+    // paths are generated in the background while init finishes
+    static final String CAROUSEL_PATH = "carousel";
+    private PathPreparationService paths;
+    private SwervePath carouselPath;
+    private FollowerConstants carouselFollowerConstants = new FollowerConstants(350, true);
+    private SwervePathGenerationConstants autoPathGenerationConstants = new SwervePathGenerationConstants(80, 0.5, 3, 750);
+
+    // sampled once per loop so every controller sees the same time
+    private LoopClock clock = new LoopClock();
+    private VoltageService voltage;
+    private TunableRegistry tunables = new TunableRegistry();
+
     static final int INIT = 0;
     static final int ROTATE_CAROUSEL = 1;
     static final int SHIPPING_HUB = 2;
@@ -142,6 +165,12 @@ public class AutoOp extends OpMode {
     @Override
     public void init() {
         robot = new WHSRobotImpl(hardwareMap);
+        robot.setControlClock(clock);
+        voltage = new VoltageService(hardwareMap);
+        robot.setVoltageService(voltage);
+        TunedGains.load(RobotConstants.class);
+        RobotConstants.bindTunables(tunables);
+        tunables.start();
         robot.drivetrain.resetEncoders();
         // add outtake reset
         defineStatesEnabled();
@@ -202,6 +231,8 @@ public class AutoOp extends OpMode {
         carouselPositions[RED] = new Position(-1600.0,1510);
         carouselPositions[BLUE] = new Position(-1630, -1590);
 
+        preparePaths();
+
         // INIT Camera
         /*initVuforia();
         initTfod();
@@ -230,6 +261,31 @@ public class AutoOp extends OpMode {
         barcodeLocation[2][TESTED_BOTTOM] = 3; // BOTTOM*/
         Coordinate initial = new Coordinate(startingPositions[STARTING_ALLIANCE][STARTING_SIDE],0);
         robot.setInitialCoordinate(initial);
+        robot.startLocalization();
+    }
+
+    private void preparePaths() {
+        paths = new PathPreparationService(PathCache.onRobot());
+        if (stateEnabled[ROTATE_CAROUSEL]) {
+            // one continuous path; the robot no longer settles at carouselApproach before going on
+            PathChain carouselChain = new PathChain(startingOffsetPositions[STARTING_ALLIANCE][STARTING_SIDE])
+                    .passThrough("carouselApproach", carouselApproach[STARTING_ALLIANCE])
+                    .stop("carousel", carouselPositions[STARTING_ALLIANCE]);
+            paths.submitSwervePath(CAROUSEL_PATH, carouselChain, carouselFollowerConstants, autoPathGenerationConstants);
+        }
+    }
+
+    @Override
+    public void init_loop() {
+        telemetry.addData("Paths", paths.getProgress());
+    }
+
+    @Override
+    public void stop() {
+        paths.shutdown();
+        robot.stopLocalization();
+        voltage.shutdown();
+        tunables.shutdown();
     }
 
 /*@Override
@@ -255,13 +311,12 @@ public class AutoOp extends OpMode {
 
     @Override
     public void loop() {
+        clock.update();
+        tunables.update();
         if(gamepad1.y){
             throw new RuntimeException("bad");
         }
 
-        robot.estimateHeading();
-        robot.estimatePosition();
-
         if(gamepad1.a){
             robot.drivetrain.operate(0,0);
         } else {
@@ -300,14 +355,19 @@ public class AutoOp extends OpMode {
                 case ROTATE_CAROUSEL:
                     switch (subState) {
                         case 0:
-                            robot.driveToTarget(carouselApproach[STARTING_ALLIANCE], true);
-                            if (!robot.driveToTargetInProgress()) {
+                            if (carouselPath == null) {
+                                // only waits if the path still isn't done by the time we get here
+                                carouselPath = paths.getSwervePath(CAROUSEL_PATH);
+                            }
+                            robot.rotateToTarget(carouselPath.getPoints().getTangent(0), true);
+                            if (!robot.rotateToTargetInProgress()) {
+                                robot.updatePath(carouselPath);
                                 subState++;
                             }
                             break;
                         case 1:
-                            robot.driveToTarget(carouselPositions[STARTING_ALLIANCE], true);
-                            if (!robot.driveToTargetInProgress()) {
+                            robot.swerveToTarget();
+                            if (!robot.swerveInProgress()) {
                                 subState++;
                             }
                             break;
@@ -529,6 +589,7 @@ public class AutoOp extends OpMode {
         telemetry.addData("Estimated Position",String.format("%s,%s",robot.getCoordinate().getX(),robot.getCoordinate().getY()));
         telemetry.addData("Drive to target:", robot.driveToTargetInProgress());
         telemetry.addData("Rotate to target:", robot.rotateToTargetInProgress());
+        telemetry.addData("Paths", paths.getProgress());
         telemetry.addData("DTT error",robot.distanceToTargetDebug);
         telemetry.addData("RTT error",robot.angleToTargetDebug);
         //telemetry.addData("Outtake extension: ", robot.robotOuttake.slidingInProgress);
@@ -0,0 +1,119 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Binary log of drivetrain characterization samples, written on the robot and read back by
+ * {@link FeedforwardFitter} either on the robot or on a laptop.
+ * <p>
+ * After a short header every sample is a fixed 38 byte record, so a minute of logging at loop
+ * rate is a couple hundred kilobytes. Plain java.io only, so the reader runs on any JVM.
+ */
+public class CharacterizationLog {
+
+    private static final int MAGIC = 0x57485343; // "WHSC"
+    private static final int FORMAT_VERSION = 1;
+
+    public static final int QUASISTATIC = 0;
+    public static final int STEP = 1;
+
+    /**
+     * One loop of one test. Positions are mm, velocities mm/s, powers are what was sent to the
+     * motors and voltage is the battery voltage at the time.
+     */
+    public static class Sample {
+        public final int run;
+        public final int test;
+        public final double time;
+        public final double voltage;
+        public final double leftPower;
+        public final double rightPower;
+        public final double leftPosition;
+        public final double rightPosition;
+        public final double leftVelocity;
+        public final double rightVelocity;
+
+        public Sample(int run, int test, double time, double voltage, double leftPower, double rightPower, double leftPosition, double rightPosition, double leftVelocity, double rightVelocity) {
+            this.run = run;
+            this.test = test;
+            this.time = time;
+            this.voltage = voltage;
+            this.leftPower = leftPower;
+            this.rightPower = rightPower;
+            this.leftPosition = leftPosition;
+            this.rightPosition = rightPosition;
+            this.leftVelocity = leftVelocity;
+            this.rightVelocity = rightVelocity;
+        }
+    }
+
+    private final DataOutputStream output;
+
+    public CharacterizationLog(File file) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+    }
+
+    public void write(Sample sample) throws IOException {
+        output.writeByte(sample.run);
+        output.writeByte(sample.test);
+        output.writeDouble(sample.time);
+        // floats are plenty for sensor readings and keep each record small
+        output.writeFloat((float) sample.voltage);
+        output.writeFloat((float) sample.leftPower);
+        output.writeFloat((float) sample.rightPower);
+        output.writeFloat((float) sample.leftPosition);
+        output.writeFloat((float) sample.rightPosition);
+        output.writeFloat((float) sample.leftVelocity);
+        output.writeFloat((float) sample.rightVelocity);
+    }
+
+    public void close() throws IOException {
+        output.close();
+    }
+
+    /**
+     * Reads every complete sample in the file. A record cut short by the robot being switched off
+     * mid write is dropped.
+     */
+    public static ArrayList<Sample> read(File file) throws IOException {
+        ArrayList<Sample> samples = new ArrayList<Sample>();
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " is not a characterization log");
+            }
+            int version = input.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException(file + " is log format " + version + ", expected " + FORMAT_VERSION);
+            }
+            while (true) {
+                int run;
+                try {
+                    run = input.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    samples.add(new Sample(run, input.readUnsignedByte(), input.readDouble(), input.readFloat(),
+                            input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat(), input.readFloat()));
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        } finally {
+            input.close();
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,24 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+/**
+ * Where controllers get the current time from, in seconds.
+ * <p>
+ * {@link #SYSTEM} reads the system clock on every call, which is what every controller did before
+ * clocks could be swapped out. An OpMode that wants every controller to agree on "now" gives them
+ * a {@link LoopClock} and updates it once at the top of loop(). Simulations and tests use a
+ * {@link FakeClock} and step time themselves.
+ */
+public interface ControlClock {
+
+    ControlClock SYSTEM = new ControlClock() {
+        @Override
+        public double getTime() {
+            return System.nanoTime() / 1E9;
+        }
+    };
+
+    /**
+     * @return the current time in seconds; only differences between two readings mean anything
+     */
+    double getTime();
+}
@@ -37,6 +37,11 @@ public class ControlConstants {
         this.kA = kA;
     }
 
+    public ControlConstants(double kP, double kI, double kD, double kV, double kA, FeedforwardFunction kF) {
+        this(kP, kI, kD, kV, kA);
+        this.kF = kF;
+    }
+
 
 
     public double getkP() {
@@ -0,0 +1,37 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+/**
+ * A clock that only moves when told to, so controllers can be run in a simulation as fast as the
+ * JVM allows and give the same answers every time.
+ */
+public class FakeClock implements ControlClock {
+
+    private double time;
+
+    public FakeClock(double startTime) {
+        time = startTime;
+    }
+
+    public FakeClock() {
+        this(0);
+    }
+
+    public void setTime(double time) {
+        this.time = time;
+    }
+
+    /**
+     * Moves the clock forward by {@code seconds}.
+     */
+    public void advance(double seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("time can't go backwards");
+        }
+        time += seconds;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+}
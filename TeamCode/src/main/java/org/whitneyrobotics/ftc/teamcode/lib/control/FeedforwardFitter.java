@@ -0,0 +1,171 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Fits voltage = kS * sign(velocity) + kV * velocity + kA * acceleration to a characterization log
+ * by least squares, separately for each side of the drivetrain.
+ * <p>
+ * Quasi-static runs pin down kS and kV because their acceleration is close to zero; step runs
+ * supply the acceleration that kA is fit from. Acceleration is not logged, it is the slope of
+ * the logged velocity across a few samples within the same run. Samples slower than
+ * {@link #MIN_VELOCITY} are left out, since the wheels are still stuck on static friction there.
+ * <p>
+ * Runs on a laptop too:
+ * <pre>
+ *     adb pull /sdcard/FIRST/settings/characterization-1234.bin
+ *     java -cp TeamCode/build/intermediates/javac/debug/classes org.whitneyrobotics.ftc.teamcode.lib.control.FeedforwardFitter characterization-1234.bin
+ * </pre>
+ */
+public class FeedforwardFitter {
+
+    public static final double MIN_VELOCITY = 20; // mm/s
+    // volts the constants are scaled to when they are used as motor power
+    public static final double NOMINAL_VOLTAGE = 12;
+    // samples either side used for the acceleration slope
+    private static final int ACCELERATION_HALF_WINDOW = 2;
+
+    public static class Result {
+        // volts, volts per mm/s and volts per mm/s^2
+        public final double kS;
+        public final double kV;
+        public final double kA;
+        public final double rSquared;
+        public final int sampleCount;
+
+        Result(double kS, double kV, double kA, double rSquared, int sampleCount) {
+            this.kS = kS;
+            this.kV = kV;
+            this.kA = kA;
+            this.rSquared = rSquared;
+            this.sampleCount = sampleCount;
+        }
+
+        /**
+         * kS, kV and kA as motor power at {@link #NOMINAL_VOLTAGE}, the units the follower constants use.
+         */
+        public double[] asPower() {
+            return new double[]{kS / NOMINAL_VOLTAGE, kV / NOMINAL_VOLTAGE, kA / NOMINAL_VOLTAGE};
+        }
+
+        @Override
+        public String toString() {
+            double[] power = asPower();
+            return String.format("kS %.4f V  kV %.6f V/(mm/s)  kA %.6f V/(mm/s^2)  | as power: kS %.4f kV %.7f kA %.7f  | R^2 %.3f, %d samples",
+                    kS, kV, kA, power[0], power[1], power[2], rSquared, sampleCount);
+        }
+    }
+
+    public static Result fitLeft(ArrayList<CharacterizationLog.Sample> samples) {
+        return fit(samples, true);
+    }
+
+    public static Result fitRight(ArrayList<CharacterizationLog.Sample> samples) {
+        return fit(samples, false);
+    }
+
+    private static Result fit(ArrayList<CharacterizationLog.Sample> samples, boolean left) {
+        // normal equations for the three regressors sign(v), v and a
+        double[][] xtx = new double[3][3];
+        double[] xty = new double[3];
+        double sumY = 0;
+        double sumYY = 0;
+        int count = 0;
+        ArrayList<double[]> rows = new ArrayList<double[]>();
+
+        int n = samples.size();
+        for (int i = ACCELERATION_HALF_WINDOW; i < n - ACCELERATION_HALF_WINDOW; i++) {
+            CharacterizationLog.Sample before = samples.get(i - ACCELERATION_HALF_WINDOW);
+            CharacterizationLog.Sample sample = samples.get(i);
+            CharacterizationLog.Sample after = samples.get(i + ACCELERATION_HALF_WINDOW);
+            if (before.run != sample.run || after.run != sample.run || after.time <= before.time) {
+                continue;
+            }
+            double velocity = left ? sample.leftVelocity : sample.rightVelocity;
+            if (Math.abs(velocity) < MIN_VELOCITY) {
+                continue;
+            }
+            double acceleration = ((left ? after.leftVelocity : after.rightVelocity) - (left ? before.leftVelocity : before.rightVelocity)) / (after.time - before.time);
+            double voltage = (left ? sample.leftPower : sample.rightPower) * sample.voltage;
+
+            double[] x = {Math.signum(velocity), velocity, acceleration};
+            for (int r = 0; r < 3; r++) {
+                for (int c = 0; c < 3; c++) {
+                    xtx[r][c] += x[r] * x[c];
+                }
+                xty[r] += x[r] * voltage;
+            }
+            sumY += voltage;
+            sumYY += voltage * voltage;
+            count++;
+            rows.add(new double[]{x[0], x[1], x[2], voltage});
+        }
+        if (count < 3) {
+            throw new IllegalArgumentException("only " + count + " usable samples, need at least 3");
+        }
+
+        double[] k = solve(xtx, xty);
+
+        double residual = 0;
+        for (double[] row : rows) {
+            double error = row[3] - (k[0] * row[0] + k[1] * row[1] + k[2] * row[2]);
+            residual += error * error;
+        }
+        double total = sumYY - sumY * sumY / count;
+        return new Result(k[0], k[1], k[2], total == 0 ? 0 : 1 - residual / total, count);
+    }
+
+    // Gaussian elimination with partial pivoting; a and b are overwritten
+    private static double[] solve(double[][] a, double[] b) {
+        int n = b.length;
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++) {
+                if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+                    pivot = row;
+                }
+            }
+            if (Math.abs(a[pivot][col]) < 1E-12) {
+                throw new IllegalArgumentException("samples don't pin down every constant; log both quasi-static and step runs");
+            }
+            double[] swapRow = a[col];
+            a[col] = a[pivot];
+            a[pivot] = swapRow;
+            double swap = b[col];
+            b[col] = b[pivot];
+            b[pivot] = swap;
+
+            for (int row = col + 1; row < n; row++) {
+                double factor = a[row][col] / a[col][col];
+                for (int c = col; c < n; c++) {
+                    a[row][c] -= factor * a[col][c];
+                }
+                b[row] -= factor * b[col];
+            }
+        }
+        double[] x = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double sum = b[row];
+            for (int c = row + 1; c < n; c++) {
+                sum -= a[row][c] * x[c];
+            }
+            x[row] = sum / a[row][row];
+        }
+        return x;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: FeedforwardFitter <log file>...");
+            System.exit(1);
+        }
+        for (String path : args) {
+            ArrayList<CharacterizationLog.Sample> samples = CharacterizationLog.read(new File(path));
+            System.out.println(path + " (" + samples.size() + " samples)");
+            System.out.println("  left:  " + fitLeft(samples));
+            System.out.println("  right: " + fitRight(samples));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+/**
+ * A simulated plant that responds to its input after a dead time and then settles toward
+ * gain * input with the given time constant. Close enough to a motor driving a mechanism to
+ * try out tuning code without the robot.
+ */
+public class FirstOrderDeadTimePlant {
+
+    private static final int ULTIMATE_ITERATIONS = 100;
+
+    private final double gain;
+    private final double timeConstant;
+    private final double deadTime;
+    private final double decay;
+    // inputs waiting out the dead time, oldest at head
+    private final double[] delayed;
+    private int head = 0;
+    private double output = 0;
+
+    /**
+     * @param samplePeriod seconds each {@link #step} advances the plant by
+     */
+    public FirstOrderDeadTimePlant(double gain, double timeConstant, double deadTime, double samplePeriod) {
+        if (!(timeConstant > 0) || deadTime < 0 || !(samplePeriod > 0)) {
+            throw new IllegalArgumentException("timeConstant and samplePeriod must be positive and deadTime can't be negative");
+        }
+        this.gain = gain;
+        this.timeConstant = timeConstant;
+        this.deadTime = deadTime;
+        decay = Math.exp(-samplePeriod / timeConstant);
+        delayed = new double[(int) Math.round(deadTime / samplePeriod) + 1];
+    }
+
+    /**
+     * Applies input for one sample period.
+     *
+     * @return the plant's output at the end of it
+     */
+    public double step(double input) {
+        delayed[head] = input;
+        head = (head + 1) % delayed.length;
+        // head now holds the input from deadTime ago
+        output = decay * output + (1 - decay) * gain * delayed[head];
+        return output;
+    }
+
+    public double getOutput() {
+        return output;
+    }
+
+    /**
+     * @return frequency in rad/s where the plant lags its input by half a cycle
+     */
+    private double getUltimateFrequency() {
+        if (deadTime == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // phase lag atan(w * tau) + w * L rises from 0 to past pi between 0 and pi / L
+        double low = 0;
+        double high = Math.PI / deadTime;
+        for (int i = 0; i < ULTIMATE_ITERATIONS; i++) {
+            double mid = (low + high) / 2;
+            if (Math.atan(mid * timeConstant) + mid * deadTime < Math.PI) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * @return the exact proportional gain that puts the loop on the edge of oscillating
+     */
+    public double getUltimateGain() {
+        double w = getUltimateFrequency();
+        return Math.sqrt(1 + w * timeConstant * w * timeConstant) / Math.abs(gain);
+    }
+
+    public double getUltimatePeriod() {
+        return 2 * Math.PI / getUltimateFrequency();
+    }
+}
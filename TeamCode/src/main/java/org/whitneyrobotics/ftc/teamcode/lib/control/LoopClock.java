@@ -0,0 +1,42 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+/**
+ * Samples the system clock once per OpMode loop, so every controller updated during that loop
+ * sees the same time.
+ * <pre>
+ *     public void loop() {
+ *         clock.update();
+ *         ...
+ *     }
+ * </pre>
+ */
+public class LoopClock implements ControlClock {
+
+    private double time;
+    private double deltaTime = 0;
+
+    public LoopClock() {
+        time = System.nanoTime() / 1E9;
+    }
+
+    /**
+     * Call once, at the top of the loop, before any controller is updated.
+     */
+    public void update() {
+        double now = System.nanoTime() / 1E9;
+        deltaTime = now - time;
+        time = now;
+    }
+
+    @Override
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return seconds between the last two updates
+     */
+    public double getDeltaTime() {
+        return deltaTime;
+    }
+}
@@ -1,51 +1,154 @@
 package org.whitneyrobotics.ftc.teamcode.lib.control;
 
+/**
+ * PID on an error, with optional extras that are all off until set:
+ * <ul>
+ *     <li>{@link #setIntegralLimit} clamps the integral.</li>
+ *     <li>{@link #setOutputLimit} clamps the output and stops integrating while the output is
+ *     pinned at the limit and the error would push it further, so the integral doesn't wind up
+ *     during a long move.</li>
+ *     <li>{@link #setDerivativeOnMeasurement} differentiates the measurement instead of the
+ *     error, so a jump in the target doesn't kick the output. Needs
+ *     {@link #calculate(double, double)}.</li>
+ *     <li>{@link #setDerivativeFilter} low-passes the derivative to keep sensor noise out.</li>
+ * </ul>
+ */
 public class PIDController {
 
     ControlConstants constants;
+    private ControlClock clock;
 
-    private double lastKnownTime = 0;
+    private double integralLimit = Double.POSITIVE_INFINITY;
+    private double outputLimit = Double.POSITIVE_INFINITY;
+    private boolean derivativeOnMeasurement = false;
+    private double derivativeFilterTime = 0;
+
+    // NaN until the first init() or calculate(), so the first update never sees a bogus deltaTime
+    private double lastKnownTime = Double.NaN;
     private double lastKnownError = 0;
+    private double lastKnownMeasurement = Double.NaN;
 
     private double error = 0;
     private double integral = 0;
     private double derivative = 0;
 
-    public PIDController(ControlConstants constants) {
+    public PIDController(ControlConstants constants, ControlClock clock) {
         setConstants(constants);
+        setClock(clock);
+    }
+
+    public PIDController(ControlConstants constants) {
+        this(constants, ControlClock.SYSTEM);
     }
 
     public void init(double initialError) {
-        lastKnownTime = System.nanoTime() / 1E9;
+        lastKnownTime = clock.getTime();
         lastKnownError = initialError;
+        lastKnownMeasurement = Double.NaN;
         integral = 0;
+        derivative = 0;
     }
 
     public void setConstants(ControlConstants constants) {
         this.constants = constants;
     }
 
+    public void setClock(ControlClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @param limit largest the integral may grow either way, in error units times seconds
+     */
+    public void setIntegralLimit(double limit) {
+        if (!(limit >= 0)) {
+            throw new IllegalArgumentException("integral limit can't be negative");
+        }
+        integralLimit = limit;
+    }
+
+    /**
+     * @param limit largest output either way; also where integration stops while saturated
+     */
+    public void setOutputLimit(double limit) {
+        if (!(limit > 0)) {
+            throw new IllegalArgumentException("output limit must be positive");
+        }
+        outputLimit = limit;
+    }
+
+    public void setDerivativeOnMeasurement(boolean derivativeOnMeasurement) {
+        this.derivativeOnMeasurement = derivativeOnMeasurement;
+    }
+
+    /**
+     * @param timeConstant seconds; 0 turns the filter off
+     */
+    public void setDerivativeFilter(double timeConstant) {
+        if (!(timeConstant >= 0)) {
+            throw new IllegalArgumentException("filter time constant can't be negative");
+        }
+        derivativeFilterTime = timeConstant;
+    }
 
     public void calculate(double error) {
+        calculate(error, Double.NaN);
+    }
+
+    /**
+     * @param measurement what the error was worked out from, for derivative on measurement;
+     *                    NaN falls back to the derivative of the error
+     */
+    public void calculate(double error, double measurement) {
         this.error = error;
 
         //Integral & Derivative
-        double currentTime = System.nanoTime() / 1E9;
+        double currentTime = clock.getTime();
+        if (Double.isNaN(lastKnownTime)) {
+            init(error);
+            lastKnownMeasurement = measurement;
+            return;
+        }
         double deltaTime = currentTime - lastKnownTime;
+        if (deltaTime <= 0) {
+            // called twice in one loop; keep the last integral and derivative instead of dividing by zero
+            return;
+        }
         lastKnownTime = currentTime;
 
-        //Integral
-        integral += error * deltaTime;
-
         //Derivative
-        double deltaError = error - lastKnownError;
+        double rawDerivative;
+        if (derivativeOnMeasurement && !Double.isNaN(measurement) && !Double.isNaN(lastKnownMeasurement)) {
+            // error = target - measurement, so with the target held still the two agree
+            rawDerivative = -(measurement - lastKnownMeasurement) / deltaTime;
+        } else {
+            rawDerivative = (error - lastKnownError) / deltaTime;
+        }
         lastKnownError = error;
-        derivative = deltaError / deltaTime;
+        lastKnownMeasurement = measurement;
+        if (derivativeFilterTime > 0) {
+            derivative += (rawDerivative - derivative) * deltaTime / (derivativeFilterTime + deltaTime);
+        } else {
+            derivative = rawDerivative;
+        }
+
+        //Integral
+        double unclamped = rawOutput();
+        boolean windingUp = Math.abs(unclamped) >= outputLimit && Math.signum(error) == Math.signum(unclamped);
+        if (!windingUp) {
+            integral += error * deltaTime;
+            integral = Math.max(-integralLimit, Math.min(integralLimit, integral));
+        }
 
     }
 
-    public double getOutput() {
+    private double rawOutput() {
         return constants.getkP() * error + constants.getkI() * integral + constants.getkD() * derivative;
+    }
+
+    public double getOutput() {
+        double output = rawOutput();
+        return Math.max(-outputLimit, Math.min(outputLimit, output));
 
     }
 
@@ -1,12 +1,13 @@
 package org.whitneyrobotics.ftc.teamcode.lib.control;
 
 import org.whitneyrobotics.ftc.teamcode.lib.motion.MotionProfile;
-import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 
 public class PIDFController {
     ControlConstants constants;
+    private ControlClock clock = ControlClock.SYSTEM;
 
-    double lastKnownTime;
+    // NaN until the first init() or calculate(), so the first update never sees a bogus deltaTime
+    double lastKnownTime = Double.NaN;
     double lastKnownError;
     double integral;
     double derivative;
@@ -39,22 +40,36 @@ public class PIDFController {
         this.constants = constants;
     }
 
+    public void setClock(ControlClock clock) {
+        this.clock = clock;
+    }
+
     public void init(double initialError) {
-        lastKnownTime = System.nanoTime() / 1E9;
+        lastKnownTime = clock.getTime();
         lastKnownError = initialError;
         integral = 0;
+        derivative = 0;
     }
 
     public void calculate(double error, double currentPosition, double currentVelocity){
        this.currentPosition = currentPosition;
        this.currentVelocity = currentVelocity;
        this.error = error;
-       double deltaError = error - lastKnownError;
+       if (Double.isNaN(lastKnownTime)) {
+           init(error);
+           return;
+       }
 
-       double currentTime = System.nanoTime() / 1E9;
+       double currentTime = clock.getTime();
        double deltaTime = currentTime - lastKnownTime;
+       if (deltaTime <= 0) {
+           // called twice in one loop; keep the last integral and derivative instead of dividing by zero
+           return;
+       }
        lastKnownTime = currentTime;
 
+       double deltaError = error - lastKnownError;
+       lastKnownError = error;
        integral += error * deltaTime;
        derivative = deltaError/deltaTime;
     }
@@ -69,12 +84,20 @@ public class PIDFController {
         return output;
     }
 
+    /**
+     * @return index of the motion profile point closest to {@code position}
+     */
     public int velocityAtClosestPoint(double position){
-        double[] differenceArray = new double[motionProfile.getPoints().length];
-        for (int i = 0; i < motionProfile.getPoints().length; i++) {
-            differenceArray[i] = motionProfile.getPoints()[i] - position;
-        }
-        return Functions.calculateIndexOfSmallestValue(differenceArray);
+        return motionProfile.indexOfClosestPoint(position);
+    }
+
+    /**
+     * Sets the target velocity and acceleration to the motion profile's at {@code position},
+     * interpolated between its points. Cheap enough to call every loop; nothing is allocated.
+     */
+    public void setTargetsFromProfile(double position){
+        targetVelocity = motionProfile.getVelocityAt(position);
+        targetAcceleration = motionProfile.getAccelerationAt(position);
     }
 
     public double getTargetVelocity() {
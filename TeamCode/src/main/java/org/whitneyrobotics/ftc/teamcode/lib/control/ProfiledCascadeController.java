@@ -0,0 +1,123 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import org.whitneyrobotics.ftc.teamcode.lib.motion.TimedProfile;
+import org.whitneyrobotics.ftc.teamcode.lib.motion.TrapezoidProfile;
+
+/**
+ * Drives a mechanism along a trapezoid profile to each new target with a position loop wrapped
+ * around a velocity loop.
+ * <p>
+ * Every call reads the profile's position, velocity and acceleration for now. The outer loop
+ * turns position error into a velocity correction on top of the profile's velocity, and the
+ * inner loop turns the error against the measured velocity into power. Feedforward comes from
+ * the velocity constants: kV times profile velocity, kA times profile acceleration, and kF if
+ * set, which is where gravity goes for a lift. Nothing blocks; call {@link #calculate} once per
+ * loop and watch {@link #isProfileFinished()}.
+ * <p>
+ * Profiles start at rest from wherever the mechanism is, so retargeting mid move starts the new
+ * profile from zero velocity and leaves the loops to catch up with what the mechanism is doing.
+ */
+public class ProfiledCascadeController {
+
+    private final PIDController positionController;
+    private final PIDController velocityController;
+    private final ControlConstants velocityConstants;
+    private final double maxVelocity;
+    private final double maxAcceleration;
+    private ControlClock clock;
+    // null runs the feedforward as tuned, at nominal voltage
+    private VoltageService voltage;
+
+    private TimedProfile profile;
+    private double profileStartTime;
+
+    private double referencePosition;
+    private double referenceVelocity;
+
+    /**
+     * @param positionConstants gains on position error, giving a velocity correction
+     * @param velocityConstants gains on velocity error giving power, plus the kV, kA and kF feedforward
+     * @param maxVelocity       profile cruise velocity, position units per second
+     * @param maxAcceleration   profile acceleration and deceleration, position units per second squared
+     */
+    public ProfiledCascadeController(ControlConstants positionConstants, ControlConstants velocityConstants, double maxVelocity, double maxAcceleration, ControlClock clock) {
+        positionController = new PIDController(positionConstants, clock);
+        velocityController = new PIDController(velocityConstants, clock);
+        this.velocityConstants = velocityConstants;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.clock = clock;
+    }
+
+    public ProfiledCascadeController(ControlConstants positionConstants, ControlConstants velocityConstants, double maxVelocity, double maxAcceleration) {
+        this(positionConstants, velocityConstants, maxVelocity, maxAcceleration, ControlClock.SYSTEM);
+    }
+
+    public void setClock(ControlClock clock) {
+        this.clock = clock;
+        positionController.setClock(clock);
+        velocityController.setClock(clock);
+    }
+
+    public void setVoltageService(VoltageService voltage) {
+        this.voltage = voltage;
+    }
+
+    /**
+     * Starts a new profile from currentPosition to target, timed from now.
+     */
+    public void setTarget(double target, double currentPosition) {
+        profile = new TrapezoidProfile(currentPosition, target, maxVelocity, maxAcceleration);
+        profileStartTime = clock.getTime();
+        positionController.init(0);
+        velocityController.init(0);
+    }
+
+    /**
+     * @return the power to send to the motor, or 0 before the first {@link #setTarget}
+     */
+    public double calculate(double currentPosition, double currentVelocity) {
+        if (profile == null) {
+            return 0;
+        }
+        double t = clock.getTime() - profileStartTime;
+        referencePosition = profile.getPosition(t);
+        referenceVelocity = profile.getVelocity(t);
+        double referenceAcceleration = profile.getAcceleration(t);
+
+        positionController.calculate(referencePosition - currentPosition, currentPosition);
+        double velocityCommand = referenceVelocity + positionController.getOutput();
+        velocityController.calculate(velocityCommand - currentVelocity, currentVelocity);
+
+        double feedforward = velocityConstants.getkV() * referenceVelocity + velocityConstants.getkA() * referenceAcceleration;
+        if (velocityConstants.getkF() != null) {
+            feedforward += velocityConstants.getkF().invoke(currentPosition, currentVelocity);
+        }
+        if (voltage != null) {
+            feedforward *= voltage.getCompensation();
+        }
+        return feedforward + velocityController.getOutput();
+    }
+
+    /**
+     * @return true once the profile has reached its target; the loops keep holding it there
+     */
+    public boolean isProfileFinished() {
+        return profile == null || profile.isFinished(clock.getTime() - profileStartTime);
+    }
+
+    /**
+     * @return the target of the current profile, NaN before the first {@link #setTarget}
+     */
+    public double getTarget() {
+        return profile == null ? Double.NaN : profile.getEndPosition();
+    }
+
+    public double getReferencePosition() {
+        return referencePosition;
+    }
+
+    public double getReferenceVelocity() {
+        return referenceVelocity;
+    }
+}
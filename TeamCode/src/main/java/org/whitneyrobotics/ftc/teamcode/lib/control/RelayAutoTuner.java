@@ -0,0 +1,190 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+/**
+ * Finds PID gains for a loop by switching its output between two levels and watching the
+ * oscillation that results (the Astrom-Hagglund relay experiment).
+ * <p>
+ * The relay pushes with bias + amplitude whenever the error is above the hysteresis band and
+ * with bias - amplitude whenever it is below, so the plant settles into a steady limit cycle.
+ * The period of that cycle is the ultimate period, and the ultimate gain follows from the relay
+ * amplitude and how far the measurement swings. A {@link Rule} turns the two into gains. The
+ * first few cycles are left out while the oscillation settles. The relay drives a square wave,
+ * not the sine the describing function assumes, so the ultimate gain is biased. On plants
+ * dominated by lag it reads about a quarter low, which errs toward gentler gains. When dead time
+ * dominates it reads about a fifth high. Either way the period comes out within about an eighth.
+ * <p>
+ * Nothing blocks: call {@link #calculate(double)} once per loop, send what it returns to the
+ * plant, and stop when {@link #isFinished()}. Gains come out in plant input per unit of error;
+ * pass outputScale to {@link #getGains} when the controller's output is mapped before reaching
+ * the plant. RelayAutoTunerTest runs the experiment against {@link FirstOrderDeadTimePlant}s
+ * and pins these errors.
+ */
+public class RelayAutoTuner {
+
+    /**
+     * Tuning rules as fractions of the ultimate gain and period: kP = kpFactor * Ku,
+     * Ti = tiFactor * Tu and Td = tdFactor * Tu.
+     */
+    public enum Rule {
+        ZIEGLER_NICHOLS(0.6, 0.5, 0.125),
+        TYREUS_LUYBEN(1 / 2.2, 2.2, 1 / 6.3),
+        PESSEN_INTEGRAL(0.7, 0.4, 0.15),
+        SOME_OVERSHOOT(0.33, 0.5, 0.33),
+        NO_OVERSHOOT(0.2, 0.5, 0.33);
+
+        public final double kpFactor;
+        public final double tiFactor;
+        public final double tdFactor;
+
+        Rule(double kpFactor, double tiFactor, double tdFactor) {
+            this.kpFactor = kpFactor;
+            this.tiFactor = tiFactor;
+            this.tdFactor = tdFactor;
+        }
+    }
+
+    public static final int SETTLING_CYCLES = 2;
+    public static final int MEASURED_CYCLES = 4;
+
+    private final double setpoint;
+    private final double bias;
+    private final double amplitude;
+    private final double hysteresis;
+    private final double timeout;
+    private ControlClock clock;
+
+    private double startTime = Double.NaN;
+    private boolean relayHigh = true;
+    private double lastRiseTime = Double.NaN;
+    private double cycleMax = Double.NEGATIVE_INFINITY;
+    private double cycleMin = Double.POSITIVE_INFINITY;
+    private int cycles = 0;
+    private double periodSum = 0;
+    private double swingSum = 0;
+    private boolean finished = false;
+    private boolean timedOut = false;
+
+    /**
+     * @param setpoint   measurement to oscillate around
+     * @param bias       output that roughly holds the plant at the setpoint, e.g. gravity feedforward
+     * @param amplitude  how far the relay pushes either side of bias
+     * @param hysteresis error band the relay ignores, so sensor noise doesn't chatter it
+     * @param timeout    seconds to give up after if the oscillation never settles
+     */
+    public RelayAutoTuner(double setpoint, double bias, double amplitude, double hysteresis, double timeout, ControlClock clock) {
+        if (!(amplitude > 0)) {
+            throw new IllegalArgumentException("amplitude must be positive");
+        }
+        if (hysteresis < 0) {
+            throw new IllegalArgumentException("hysteresis can't be negative");
+        }
+        this.setpoint = setpoint;
+        this.bias = bias;
+        this.amplitude = amplitude;
+        this.hysteresis = hysteresis;
+        this.timeout = timeout;
+        this.clock = clock;
+    }
+
+    public RelayAutoTuner(double setpoint, double bias, double amplitude, double hysteresis, double timeout) {
+        this(setpoint, bias, amplitude, hysteresis, timeout, ControlClock.SYSTEM);
+    }
+
+    public void setClock(ControlClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return what to send to the plant this loop; bias once the experiment is over
+     */
+    public double calculate(double measurement) {
+        if (finished) {
+            return bias;
+        }
+        double time = clock.getTime();
+        if (Double.isNaN(startTime)) {
+            startTime = time;
+        }
+        if (time - startTime > timeout) {
+            finished = true;
+            timedOut = true;
+            return bias;
+        }
+
+        cycleMax = Math.max(cycleMax, measurement);
+        cycleMin = Math.min(cycleMin, measurement);
+        double error = setpoint - measurement;
+        if (!relayHigh && error > hysteresis) {
+            relayHigh = true;
+            onRise(time);
+        } else if (relayHigh && error < -hysteresis) {
+            relayHigh = false;
+        }
+        return relayHigh ? bias + amplitude : bias - amplitude;
+    }
+
+    // one full cycle runs from one switch to high until the next
+    private void onRise(double time) {
+        if (!Double.isNaN(lastRiseTime)) {
+            cycles++;
+            if (cycles > SETTLING_CYCLES) {
+                periodSum += time - lastRiseTime;
+                swingSum += (cycleMax - cycleMin) / 2;
+                if (cycles - SETTLING_CYCLES >= MEASURED_CYCLES) {
+                    finished = true;
+                }
+            }
+        }
+        lastRiseTime = time;
+        cycleMax = Double.NEGATIVE_INFINITY;
+        cycleMin = Double.POSITIVE_INFINITY;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if the experiment finished because it timed out, leaving no result
+     */
+    public boolean hasFailed() {
+        return timedOut || (finished && getMeasuredCycles() == 0);
+    }
+
+    public int getMeasuredCycles() {
+        return Math.max(0, cycles - SETTLING_CYCLES);
+    }
+
+    /**
+     * @return seconds per oscillation, averaged over the measured cycles
+     */
+    public double getUltimatePeriod() {
+        return periodSum / getMeasuredCycles();
+    }
+
+    /**
+     * @return the gain a proportional controller would start oscillating at, from the describing
+     * function of a relay with hysteresis
+     */
+    public double getUltimateGain() {
+        double swing = swingSum / getMeasuredCycles();
+        return 4 * amplitude / (Math.PI * Math.sqrt(Math.max(swing * swing - hysteresis * hysteresis, 1E-12)));
+    }
+
+    /**
+     * @param outputScale plant input per unit of controller output; 1 when the output goes straight to the plant
+     */
+    public ControlConstants getGains(Rule rule, double outputScale) {
+        if (!finished || hasFailed()) {
+            throw new IllegalStateException("relay experiment has no result yet");
+        }
+        double ku = getUltimateGain();
+        double tu = getUltimatePeriod();
+        double kP = rule.kpFactor * ku / outputScale;
+        return new ControlConstants(kP, kP / (rule.tiFactor * tu), kP * rule.tdFactor * tu);
+    }
+
+    public ControlConstants getGains(Rule rule) {
+        return getGains(rule, 1);
+    }
+}
@@ -0,0 +1,185 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carries edits to dashboard fields into the objects controllers read their gains from.
+ * <p>
+ * FTC Dashboard writes straight into public static fields and tells nobody, so a background
+ * thread polls every bound field each {@link #POLL_PERIOD_MS}. When one has changed it publishes
+ * a fresh snapshot and bumps a version number. {@link #update()} runs on the loop thread and only
+ * reads that version until something changes, then writes the new values into their targets,
+ * so controllers never see gains change halfway through a calculation.
+ * <pre>
+ *     tunables = new TunableRegistry();
+ *     RobotConstants.bindTunables(tunables);
+ *     tunables.start();
+ *     ...
+ *     public void loop() {
+ *         tunables.update();
+ *         ...
+ *     }
+ * </pre>
+ * Call {@link #shutdown()} from the OpMode's stop().
+ */
+public class TunableRegistry {
+
+    public static final long POLL_PERIOD_MS = 100;
+
+    /**
+     * Where a bound field's value goes, called on the loop thread.
+     */
+    public interface Target {
+        void set(double value);
+    }
+
+    private final ArrayList<Field> fields = new ArrayList<Field>();
+    private final ArrayList<Target> targets = new ArrayList<Target>();
+    private ScheduledExecutorService executor;
+
+    // only touched by the poll thread once started
+    private double[] polled = new double[0];
+    private volatile double[] snapshot;
+    private volatile int version = 0;
+    // only touched by the loop thread
+    private int appliedVersion = 0;
+
+    /**
+     * Binds a public static, non-final double field; the target is given the field's current value now.
+     */
+    public void bind(Class<?> owner, String fieldName, Target target) {
+        if (executor != null) {
+            throw new IllegalStateException("bind every field before start()");
+        }
+        Field field;
+        try {
+            field = owner.getField(fieldName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException(owner.getSimpleName() + " has no public field " + fieldName);
+        }
+        if (!Modifier.isStatic(field.getModifiers()) || field.getType() != double.class) {
+            throw new IllegalArgumentException(owner.getSimpleName() + "." + fieldName + " is not a static double");
+        }
+        if (Modifier.isFinal(field.getModifiers())) {
+            throw new IllegalArgumentException(owner.getSimpleName() + "." + fieldName + " is final, so the dashboard can't edit it");
+        }
+        fields.add(field);
+        targets.add(target);
+        double value = read(field);
+        target.set(value);
+
+        double[] grown = new double[polled.length + 1];
+        System.arraycopy(polled, 0, grown, 0, polled.length);
+        grown[polled.length] = value;
+        polled = grown;
+    }
+
+    /**
+     * Binds PREFIX_KP, PREFIX_KI and PREFIX_KD to the gains of constants, the way
+     * {@code RobotConstants} names them.
+     */
+    public void bindGains(Class<?> owner, String prefix, final ControlConstants constants) {
+        bind(owner, prefix + "_KP", new Target() {
+            @Override
+            public void set(double value) {
+                constants.setkP(value);
+            }
+        });
+        bind(owner, prefix + "_KI", new Target() {
+            @Override
+            public void set(double value) {
+                constants.setkI(value);
+            }
+        });
+        bind(owner, prefix + "_KD", new Target() {
+            @Override
+            public void set(double value) {
+                constants.setkD(value);
+            }
+        });
+    }
+
+    public void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TunableRegistry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        }, POLL_PERIOD_MS, POLL_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads every bound field and publishes them if any changed. The poll thread calls this; a
+     * simulation that never calls {@link #start()} can call it itself.
+     */
+    public void poll() {
+        double[] values = null;
+        for (int i = 0; i < fields.size(); i++) {
+            double value = read(fields.get(i));
+            // compare bits so a field set to NaN doesn't publish on every poll
+            if (Double.doubleToLongBits(value) != Double.doubleToLongBits(polled[i])) {
+                if (values == null) {
+                    values = polled.clone();
+                }
+                values[i] = value;
+            }
+        }
+        if (values == null) {
+            return;
+        }
+        polled = values;
+        snapshot = values;
+        version++;
+    }
+
+    /**
+     * Applies any edits made since the last call. Call once at the top of the loop, before any
+     * controller is updated.
+     *
+     * @return true if any target changed
+     */
+    public boolean update() {
+        int current = version;
+        if (current == appliedVersion) {
+            return false;
+        }
+        double[] values = snapshot;
+        for (int i = 0; i < values.length; i++) {
+            targets.get(i).set(values[i]);
+        }
+        appliedVersion = current;
+        return true;
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static double read(Field field) {
+        try {
+            return field.getDouble(null);
+        } catch (IllegalAccessException e) {
+            // getField only finds public fields
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import com.qualcomm.robotcore.hardware.HardwareMap;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a filtered battery voltage up to date on a background thread, so feedforward can be
+ * scaled for a sagging battery without a hub read in every loop.
+ * <p>
+ * The sensor is read every {@link #SAMPLE_PERIOD_MS} and run through a first order low-pass
+ * filter, which hides the dips from a motor starting up but follows the slow sag over a match.
+ * {@link #getVoltage()} and {@link #getCompensation()} only read a volatile field, so they are
+ * safe and cheap to call from the loop. Call {@link #shutdown()} from the OpMode's stop().
+ * <pre>
+ *     double power = voltage.getCompensation() * (kV * velocity + kA * acceleration);
+ * </pre>
+ */
+public class VoltageService {
+
+    // voltage the feedforward constants were tuned at
+    public static final double NOMINAL_VOLTAGE = FeedforwardFitter.NOMINAL_VOLTAGE;
+    public static final long SAMPLE_PERIOD_MS = 100;
+    // seconds; long enough to ride out a motor's inrush, short next to a match
+    public static final double FILTER_TIME_CONSTANT = 1;
+    // readings below this are a sensor hiccup or a brownout, not something to scale power up for
+    public static final double MIN_VOLTAGE = 8;
+
+    private final VoltageSensor sensor;
+    private final ScheduledExecutorService executor;
+    private volatile double voltage = NOMINAL_VOLTAGE;
+    private boolean seeded = false;
+
+    public VoltageService(VoltageSensor sensor) {
+        this.sensor = sensor;
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "VoltageService");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, 0, SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Service reading the first voltage sensor on the robot, which is the hub's battery input.
+     */
+    public VoltageService(HardwareMap hardwareMap) {
+        this(hardwareMap.voltageSensor.iterator().next());
+    }
+
+    // only ever runs on the service thread
+    private void sample() {
+        double reading;
+        try {
+            reading = sensor.getVoltage();
+        } catch (RuntimeException e) {
+            // a failed read must not cancel the schedule; keep the last value
+            e.printStackTrace();
+            return;
+        }
+        if (!(reading >= MIN_VOLTAGE)) {
+            return;
+        }
+        if (!seeded) {
+            voltage = reading;
+            seeded = true;
+            return;
+        }
+        double dt = SAMPLE_PERIOD_MS / 1000.0;
+        voltage += (reading - voltage) * dt / (FILTER_TIME_CONSTANT + dt);
+    }
+
+    /**
+     * @return filtered battery voltage, or {@link #NOMINAL_VOLTAGE} until the first good reading
+     */
+    public double getVoltage() {
+        return voltage;
+    }
+
+    /**
+     * @return what to multiply feedforward by so it puts out the voltage it would at nominal
+     */
+    public double getCompensation() {
+        return NOMINAL_VOLTAGE / voltage;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
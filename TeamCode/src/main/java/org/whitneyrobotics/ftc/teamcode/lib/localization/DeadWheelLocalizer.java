@@ -0,0 +1,98 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import org.whitneyrobotics.ftc.teamcode.subsys.DrivetrainExperimental;
+
+/**
+ * {@link Localizer} for three dead wheels, run through {@link ThreeWheelOdometry}. Heading comes
+ * from the wheels alone, so the IMU is free for other things.
+ * <p>
+ * The wheels' encoders are read off motor ports; the constants below say which ports and where
+ * the wheels sit and how far each rolls per tick. They replace the converter
+ * {@code getMMDeadwheelEncoderDeltas} builds on every call.
+ */
+public class DeadWheelLocalizer implements Localizer {
+
+    // motor ports the encoders are plugged into
+    public static final String LEFT_ENCODER = "leftOdometry";
+    public static final String RIGHT_ENCODER = "driveFL";
+    public static final String PERPENDICULAR_ENCODER = "driveFR";
+
+    // Each wheel's scale and place, kept separate so one can be recalibrated on its own. Until
+    // they are measured, the scale is the 25.4 mm wheel and 2048 ticks per rev that
+    // getMMDeadwheelEncoderDeltas uses, and the offsets are DrivetrainExperimental's
+    // L_DEAD_WHEEL_TO_ROBOT_CENTER for both parallel wheels and B_DEAD_WHEEL_TO_ROBOT_CENTER
+    // behind center for the perpendicular one.
+    public static final double LEFT_MM_PER_TICK = TrackingWheel.mmPerTick(25.4, 2048, 1);
+    public static final double RIGHT_MM_PER_TICK = TrackingWheel.mmPerTick(25.4, 2048, 1);
+    public static final double PERPENDICULAR_MM_PER_TICK = TrackingWheel.mmPerTick(25.4, 2048, 1);
+    public static final double LEFT_WHEEL_Y = DrivetrainExperimental.L_DEAD_WHEEL_TO_ROBOT_CENTER;    // mm left of center
+    public static final double RIGHT_WHEEL_Y = -DrivetrainExperimental.L_DEAD_WHEEL_TO_ROBOT_CENTER;  // mm left of center
+    public static final double PERPENDICULAR_WHEEL_X = -DrivetrainExperimental.B_DEAD_WHEEL_TO_ROBOT_CENTER; // mm forward of center
+
+    private final DcMotor leftEncoder;
+    private final DcMotor rightEncoder;
+    private final DcMotor perpendicularEncoder;
+    private final ThreeWheelOdometry odometry;
+
+    private double lastX;
+    private double lastY;
+    private double lastTime = Double.NaN;
+
+    public DeadWheelLocalizer(DcMotor leftEncoder, DcMotor rightEncoder, DcMotor perpendicularEncoder,
+                              TrackingWheel left, TrackingWheel right, TrackingWheel perpendicular) {
+        this.leftEncoder = leftEncoder;
+        this.rightEncoder = rightEncoder;
+        this.perpendicularEncoder = perpendicularEncoder;
+        odometry = new ThreeWheelOdometry(left, right, perpendicular);
+    }
+
+    /**
+     * Localizer for the wheels as wired and placed on this robot.
+     */
+    public static DeadWheelLocalizer onRobot(HardwareMap hardwareMap) {
+        return new DeadWheelLocalizer(
+                hardwareMap.get(DcMotor.class, LEFT_ENCODER),
+                hardwareMap.get(DcMotor.class, RIGHT_ENCODER),
+                hardwareMap.get(DcMotor.class, PERPENDICULAR_ENCODER),
+                new TrackingWheel(0, LEFT_WHEEL_Y, 0, LEFT_MM_PER_TICK),
+                new TrackingWheel(0, RIGHT_WHEEL_Y, 0, RIGHT_MM_PER_TICK),
+                new TrackingWheel(PERPENDICULAR_WHEEL_X, 0, 90, PERPENDICULAR_MM_PER_TICK));
+    }
+
+    @Override
+    public void setPose(double x, double y, double heading, double time) {
+        odometry.setPose(x, y, heading);
+        readEncoders();
+        lastX = x;
+        lastY = y;
+        lastTime = time;
+    }
+
+    @Override
+    public PoseSnapshot update(double time) {
+        readEncoders();
+        double x = odometry.getX();
+        double y = odometry.getY();
+        double heading = odometry.getHeading();
+
+        double deltaTime = time - lastTime;
+        boolean timed = deltaTime > 0;
+        PoseSnapshot pose = new PoseSnapshot(x, y, heading,
+                timed ? (x - lastX) / deltaTime : 0,
+                timed ? (y - lastY) / deltaTime : 0,
+                timed ? odometry.getDeltaHeading() / deltaTime : 0,
+                time);
+
+        lastX = x;
+        lastY = y;
+        lastTime = time;
+        return pose;
+    }
+
+    private void readEncoders() {
+        odometry.update(leftEncoder.getCurrentPosition(), rightEncoder.getCurrentPosition(), perpendicularEncoder.getCurrentPosition());
+    }
+}
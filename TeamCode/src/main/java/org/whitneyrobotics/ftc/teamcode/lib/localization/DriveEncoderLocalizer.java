@@ -0,0 +1,71 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+import org.whitneyrobotics.ftc.teamcode.subsys.DrivetrainExperimental;
+import org.whitneyrobotics.ftc.teamcode.subsys.IMU;
+
+/**
+ * Heading from the IMU, distance from the average of the left and right drive encoders.
+ * <p>
+ * Each step moves the robot along the heading halfway between the last one and this one, which
+ * keeps the arc error small during turns at a high update rate. Velocities are differences
+ * between updates. Strafing isn't seen, as the drive encoders can't tell it from wheel slip.
+ */
+public class DriveEncoderLocalizer implements Localizer {
+
+    private final DrivetrainExperimental drivetrain;
+    private final IMU imu;
+
+    private double x;
+    private double y;
+    private double heading;
+    // added to the IMU's heading to put it in the field frame
+    private double headingOffset;
+    private double lastLeft;
+    private double lastRight;
+    private double lastTime = Double.NaN;
+
+    public DriveEncoderLocalizer(DrivetrainExperimental drivetrain, IMU imu) {
+        this.drivetrain = drivetrain;
+        this.imu = imu;
+    }
+
+    @Override
+    public void setPose(double x, double y, double heading, double time) {
+        this.x = x;
+        this.y = y;
+        this.heading = Functions.normalizeAngle(heading);
+        headingOffset = this.heading - imu.getHeading();
+        lastLeft = drivetrain.getLAvgEncoderPosition();
+        lastRight = drivetrain.getRAvgEncoderPosition();
+        lastTime = time;
+    }
+
+    @Override
+    public PoseSnapshot update(double time) {
+        double left = drivetrain.getLAvgEncoderPosition();
+        double right = drivetrain.getRAvgEncoderPosition();
+        double currentHeading = Functions.normalizeAngle(imu.getHeading() + headingOffset);
+
+        double deltaS = DrivetrainExperimental.encToMM((left - lastLeft + right - lastRight) / 2);
+        double deltaHeading = Functions.normalizeAngle(currentHeading - heading);
+        double deltaX = deltaS * Functions.cosd(heading + deltaHeading / 2);
+        double deltaY = deltaS * Functions.sind(heading + deltaHeading / 2);
+        x += deltaX;
+        y += deltaY;
+
+        double deltaTime = time - lastTime;
+        boolean timed = deltaTime > 0;
+        PoseSnapshot pose = new PoseSnapshot(x, y, currentHeading,
+                timed ? deltaX / deltaTime : 0,
+                timed ? deltaY / deltaTime : 0,
+                timed ? deltaHeading / deltaTime : 0,
+                time);
+
+        heading = currentHeading;
+        lastLeft = left;
+        lastRight = right;
+        lastTime = time;
+        return pose;
+    }
+}
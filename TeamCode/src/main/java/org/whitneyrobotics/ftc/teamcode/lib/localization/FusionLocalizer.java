@@ -0,0 +1,138 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
+import org.whitneyrobotics.ftc.teamcode.subsys.DrivetrainExperimental;
+import org.whitneyrobotics.ftc.teamcode.subsys.IMU;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Drive encoders and the IMU blended by a {@link PoseFilter}, instead of picking either the IMU
+ * or the encoders for heading.
+ * <p>
+ * Every update predicts with the encoders' distance and with the turn since the last update
+ * from both the encoders and the IMU's yaw. The yaw is only used for that turn, never as an
+ * absolute heading correction too, since it drifts with the same gyro. Its rate is passed on as
+ * the pose's angular velocity. Fixes from elsewhere, such as a camera, can be handed
+ * in from any thread with {@link #submitFix}; the next update applies them. Noise comes from the
+ * LOCALIZATION_* fields in {@link RobotConstants} when the localizer is made.
+ * <p>
+ * A camera fix describes where the robot was when the frame was taken, which can be a good
+ * fraction of a second ago. Every update goes into a {@link PoseHistory}, so the fix is compared
+ * with the pose at that moment, carried forward by how far the robot has moved since, and only
+ * then applied. The poses since the frame are moved by the same correction, so a later fix from
+ * around the same time isn't counted twice.
+ */
+public class FusionLocalizer implements Localizer {
+
+    // a second of poses at the service's 100 Hz; older fixes are dropped
+    public static final int HISTORY_CAPACITY = 100;
+
+    private final DrivetrainExperimental drivetrain;
+    private final IMU imu;
+    private final PoseFilter filter;
+    // x, y, standard deviation, capture time; set from any thread, taken by the service thread
+    private final AtomicReference<double[]> pendingFix = new AtomicReference<>();
+    private final PoseHistory history = new PoseHistory(HISTORY_CAPACITY);
+    private final double[] pastPose = new double[3];
+
+    private double lastLeft;
+    private double lastRight;
+    private double lastYaw;
+    private double lastTime = Double.NaN;
+
+    public FusionLocalizer(DrivetrainExperimental drivetrain, IMU imu, PoseFilter.NoiseModel noise) {
+        this.drivetrain = drivetrain;
+        this.imu = imu;
+        filter = new PoseFilter(noise);
+    }
+
+    public FusionLocalizer(DrivetrainExperimental drivetrain, IMU imu) {
+        this(drivetrain, imu, new PoseFilter.NoiseModel(
+                RobotConstants.LOCALIZATION_ENCODER_DISTANCE_NOISE,
+                RobotConstants.LOCALIZATION_ENCODER_LATERAL_NOISE,
+                RobotConstants.LOCALIZATION_ENCODER_TURN_NOISE,
+                RobotConstants.LOCALIZATION_GYRO_TURN_NOISE,
+                RobotConstants.LOCALIZATION_GYRO_RANDOM_WALK));
+    }
+
+    /**
+     * Queues an absolute position for the next update to pull the pose toward. Only the latest
+     * fix queued between updates is used.
+     *
+     * @param stdDev      how far off the fix may be, mm
+     * @param captureTime when the robot was at x, y, in seconds on {@link
+     *                    org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock#SYSTEM}
+     *                    (System.nanoTime(), like camera frame timestamps); NaN for now
+     */
+    public void submitFix(double x, double y, double stdDev, double captureTime) {
+        pendingFix.set(new double[]{x, y, stdDev, captureTime});
+    }
+
+    public void submitFix(double x, double y, double stdDev) {
+        submitFix(x, y, stdDev, Double.NaN);
+    }
+
+    @Override
+    public void setPose(double x, double y, double heading, double time) {
+        // the caller says where the robot is, so start out sure of it
+        filter.setPose(x, y, heading, 0, 0);
+        lastYaw = imu.getHeading();
+        lastLeft = drivetrain.getLAvgEncoderPosition();
+        lastRight = drivetrain.getRAvgEncoderPosition();
+        lastTime = time;
+        history.clear();
+        history.add(time, x, y, filter.getHeading());
+    }
+
+    @Override
+    public PoseSnapshot update(double time) {
+        double left = drivetrain.getLAvgEncoderPosition();
+        double right = drivetrain.getRAvgEncoderPosition();
+        double yaw = imu.getHeading();
+        double rate = imu.getAngularVelocity();
+        double deltaTime = time - lastTime;
+
+        double deltaLeft = DrivetrainExperimental.encToMM(left - lastLeft);
+        double deltaRight = DrivetrainExperimental.encToMM(right - lastRight);
+        double distance = (deltaLeft + deltaRight) / 2;
+        double encoderTurn = Math.toDegrees((deltaRight - deltaLeft) / DrivetrainExperimental.getTrackWidth());
+        double imuTurn = Functions.normalizeAngle(yaw - lastYaw);
+
+        filter.predict(distance, encoderTurn, imuTurn, deltaTime);
+        double[] fix = pendingFix.getAndSet(null);
+        if (fix != null) {
+            applyFix(fix[0], fix[1], fix[2], fix[3]);
+        }
+        history.add(time, filter.getX(), filter.getY(), filter.getHeading());
+
+        boolean timed = deltaTime > 0;
+        PoseSnapshot pose = new PoseSnapshot(filter.getX(), filter.getY(), filter.getHeading(),
+                timed ? filter.getDeltaX() / deltaTime : 0,
+                timed ? filter.getDeltaY() / deltaTime : 0,
+                rate,
+                time);
+
+        lastLeft = left;
+        lastRight = right;
+        lastYaw = yaw;
+        lastTime = time;
+        return pose;
+    }
+
+    private void applyFix(double x, double y, double stdDev, double captureTime) {
+        if (Double.isNaN(captureTime) || captureTime >= history.getNewestTime()) {
+            filter.correctPosition(x, y, stdDev);
+            return;
+        }
+        if (!history.getPose(captureTime, pastPose)) {
+            // older than anything kept; too stale to place
+            return;
+        }
+        double beforeX = filter.getX();
+        double beforeY = filter.getY();
+        filter.correctPosition(x + beforeX - pastPose[0], y + beforeY - pastPose[1], stdDev);
+        history.shiftSince(captureTime, filter.getX() - beforeX, filter.getY() - beforeY);
+    }
+}
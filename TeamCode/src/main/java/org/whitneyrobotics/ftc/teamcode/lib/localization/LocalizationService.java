@@ -0,0 +1,101 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a {@link Localizer} on its own thread at a fixed rate, so the pose keeps up with the robot
+ * however long the OpMode's loop takes and the loop never waits on an encoder or IMU read.
+ * <p>
+ * Each update publishes a new {@link PoseSnapshot} through an AtomicReference. {@link #getPose()}
+ * is a single volatile read: the loop always gets a whole pose from one update, never x from one
+ * and heading from the next. {@link #setPose} hands the new pose to the service thread, which
+ * applies it before its next update, so the localizer is only ever touched from one thread.
+ * Call {@link #shutdown()} from the OpMode's stop().
+ */
+public class LocalizationService {
+
+    public static final long UPDATE_PERIOD_MS = 10;
+
+    private final Localizer localizer;
+    // runs off the wall clock, not a LoopClock, since the loop thread is what updates those
+    private final ControlClock clock;
+    private final AtomicReference<PoseSnapshot> pose = new AtomicReference<>();
+    private final AtomicReference<Coordinate> pendingPose = new AtomicReference<>();
+    private ScheduledExecutorService executor;
+
+    public LocalizationService(Localizer localizer, Coordinate initialPose, ControlClock clock) {
+        this.localizer = localizer;
+        this.clock = clock;
+        double time = clock.getTime();
+        localizer.setPose(initialPose.getX(), initialPose.getY(), initialPose.getHeading(), time);
+        pose.set(new PoseSnapshot(initialPose.getX(), initialPose.getY(), initialPose.getHeading(), 0, 0, 0, time));
+    }
+
+    public LocalizationService(Localizer localizer, Coordinate initialPose) {
+        this(localizer, initialPose, ControlClock.SYSTEM);
+    }
+
+    public void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LocalizationService");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                step();
+            }
+        }, 0, UPDATE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies any pending {@link #setPose} and runs one update. The service thread calls this; a
+     * simulation that never calls {@link #start()} can call it itself.
+     */
+    public void step() {
+        try {
+            Coordinate reset = pendingPose.getAndSet(null);
+            if (reset != null) {
+                localizer.setPose(reset.getX(), reset.getY(), reset.getHeading(), clock.getTime());
+            }
+            pose.set(localizer.update(clock.getTime()));
+        } catch (RuntimeException e) {
+            // a failed read must not cancel the schedule; keep the last pose
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the latest pose; never null
+     */
+    public PoseSnapshot getPose() {
+        return pose.get();
+    }
+
+    /**
+     * Moves the robot to the given pose from the next update on. The coordinate is copied.
+     */
+    public void setPose(Coordinate newPose) {
+        pendingPose.set(new Coordinate(newPose.getX(), newPose.getY(), newPose.getHeading()));
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
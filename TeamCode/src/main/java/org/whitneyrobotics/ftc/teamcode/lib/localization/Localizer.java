@@ -0,0 +1,21 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+/**
+ * Turns sensor readings into a pose. {@link LocalizationService} calls both methods from its own
+ * thread only, so implementations need no locking of their own.
+ */
+public interface Localizer {
+
+    /**
+     * Reads the sensors and moves the pose on to time.
+     *
+     * @param time seconds, from the service's clock
+     * @return the new pose
+     */
+    PoseSnapshot update(double time);
+
+    /**
+     * Puts the robot at the given field pose; later updates build on it.
+     */
+    void setPose(double x, double y, double heading, double time);
+}
@@ -0,0 +1,277 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+/**
+ * Extended Kalman filter on x, y and heading, kept in a few fixed arrays so a step is a couple
+ * of hundred multiplies and allocates nothing.
+ * <p>
+ * {@link #predict} moves the pose by one odometry step. The heading change comes from both the
+ * encoders and the IMU, each weighted by how much it can be trusted for a step that size:
+ * encoders slip in hard turns, the IMU drifts slowly, so fast turns lean on the IMU and slow
+ * creeping leans on the encoders. The uncertainty of the pose grows with every step. The correct
+ * methods then pull the pose toward absolute readings from something that doesn't share those
+ * errors, such as a camera or a wall, by how uncertain each side is.
+ * <p>
+ * The IMU goes in once, as a turn in {@link #predict}. Its yaw is its own gyro integrated, so it
+ * drifts along with that gyro; feeding it back in through {@link #correctHeading} every step as
+ * if it were fresh independent noise would shrink the heading uncertainty toward zero and leave
+ * camera fixes with almost no weight. Nothing here touches hardware, so PoseFilterTest checks
+ * the filter against simulated runs.
+ * <p>
+ * Units: mm and degrees outside, radians inside.
+ */
+public class PoseFilter {
+
+    /**
+     * Standard deviations the filter assumes for each sensor.
+     */
+    public static final class NoiseModel {
+        // fraction of each step's travel the encoders may be off by, along and across it
+        public final double encoderDistance;
+        public final double encoderLateral;
+        // fraction of each step's encoder turn; mecanum rollers slip a lot when turning
+        public final double encoderTurn;
+        // fraction of each step's IMU turn, plus how fast the IMU's drift grows, in degrees per
+        // root second; set it so a match's worth covers the drift seen on the robot
+        public final double gyroTurn;
+        public final double gyroRandomWalk;
+
+        public NoiseModel(double encoderDistance, double encoderLateral, double encoderTurn, double gyroTurn, double gyroRandomWalk) {
+            this.encoderDistance = encoderDistance;
+            this.encoderLateral = encoderLateral;
+            this.encoderTurn = encoderTurn;
+            this.gyroTurn = gyroTurn;
+            this.gyroRandomWalk = gyroRandomWalk;
+        }
+    }
+
+    // keeps the heading weights finite when the robot is standing still
+    private static final double MIN_TURN_VARIANCE = 1E-12;
+
+    private final NoiseModel noise;
+
+    // x, y, heading
+    private final double[] state = new double[3];
+    // row-major 3x3 covariance
+    private final double[] covariance = new double[9];
+    private final double[] jacobian = new double[9];
+    private final double[] scratch = new double[9];
+
+    private double lastDeltaX;
+    private double lastDeltaY;
+    private double lastDeltaHeading;
+
+    public PoseFilter(NoiseModel noise) {
+        this.noise = noise;
+    }
+
+    /**
+     * Puts the robot at a pose, and how sure of it we are.
+     *
+     * @param positionStdDev mm
+     * @param headingStdDev  degrees
+     */
+    public void setPose(double x, double y, double heading, double positionStdDev, double headingStdDev) {
+        state[0] = x;
+        state[1] = y;
+        state[2] = Math.toRadians(heading);
+        for (int i = 0; i < 9; i++) {
+            covariance[i] = 0;
+        }
+        covariance[0] = positionStdDev * positionStdDev;
+        covariance[4] = positionStdDev * positionStdDev;
+        covariance[8] = sq(Math.toRadians(headingStdDev));
+        lastDeltaX = 0;
+        lastDeltaY = 0;
+        lastDeltaHeading = 0;
+    }
+
+    /**
+     * Moves the pose by one odometry step.
+     *
+     * @param distance     mm the robot drove forward, from the encoders
+     * @param encoderTurn  degrees the robot turned according to the encoders; NaN if it can't tell
+     * @param gyroTurn     degrees the robot turned according to the IMU; NaN if there's no IMU
+     * @param deltaTime    seconds the step took
+     */
+    public void predict(double distance, double encoderTurn, double gyroTurn, double deltaTime) {
+        // weigh the two turns by their variances
+        double encoderVariance = sq(noise.encoderTurn * Math.toRadians(encoderTurn)) + MIN_TURN_VARIANCE;
+        double gyroVariance = sq(noise.gyroTurn * Math.toRadians(gyroTurn)) + sq(Math.toRadians(noise.gyroRandomWalk)) * Math.max(deltaTime, 0) + MIN_TURN_VARIANCE;
+        double turn;
+        double turnVariance;
+        if (Double.isNaN(gyroTurn)) {
+            turn = Math.toRadians(encoderTurn);
+            turnVariance = encoderVariance;
+        } else if (Double.isNaN(encoderTurn)) {
+            turn = Math.toRadians(gyroTurn);
+            turnVariance = gyroVariance;
+        } else {
+            double encoderWeight = gyroVariance / (encoderVariance + gyroVariance);
+            turn = Math.toRadians(encoderTurn) * encoderWeight + Math.toRadians(gyroTurn) * (1 - encoderWeight);
+            turnVariance = encoderVariance * gyroVariance / (encoderVariance + gyroVariance);
+        }
+
+        double midHeading = state[2] + turn / 2;
+        double cos = Math.cos(midHeading);
+        double sin = Math.sin(midHeading);
+        lastDeltaX = distance * cos;
+        lastDeltaY = distance * sin;
+        lastDeltaHeading = turn;
+        state[0] += lastDeltaX;
+        state[1] += lastDeltaY;
+        state[2] += turn;
+
+        // P = F P F' + Q, with F the identity plus how position moves with heading
+        setIdentity(jacobian);
+        jacobian[2] = -lastDeltaY;
+        jacobian[5] = lastDeltaX;
+        multiply(jacobian, covariance, scratch);
+        multiplyTransposed(scratch, jacobian, covariance);
+
+        // along and across the direction of travel, turned into the field frame
+        double along = sq(noise.encoderDistance * distance);
+        double across = sq(noise.encoderLateral * distance);
+        covariance[0] += along * cos * cos + across * sin * sin;
+        covariance[4] += along * sin * sin + across * cos * cos;
+        double shared = (along - across) * sin * cos;
+        covariance[1] += shared;
+        covariance[3] += shared;
+        covariance[8] += turnVariance;
+    }
+
+    /**
+     * Pulls the heading toward an absolute reading that doesn't come from the IMU, such as a
+     * camera's.
+     *
+     * @param stdDev degrees
+     */
+    public void correctHeading(double heading, double stdDev) {
+        double innovation = wrap(Math.toRadians(heading) - state[2]);
+        correct(2, innovation, sq(Math.toRadians(stdDev)));
+    }
+
+    /**
+     * Pulls the position toward an absolute fix.
+     *
+     * @param stdDev mm, the same along x and y
+     */
+    public void correctPosition(double x, double y, double stdDev) {
+        correct(0, x - state[0], stdDev * stdDev);
+        correct(1, y - state[1], stdDev * stdDev);
+    }
+
+    // one scalar measurement of state[index]; with independent noise, x then y is the same as both at once
+    private void correct(int index, double innovation, double measurementVariance) {
+        double innovationVariance = covariance[index * 4] + measurementVariance;
+        if (!(innovationVariance > 0)) {
+            return;
+        }
+        double k0 = covariance[index] / innovationVariance;
+        double k1 = covariance[3 + index] / innovationVariance;
+        double k2 = covariance[6 + index] / innovationVariance;
+        state[0] += k0 * innovation;
+        state[1] += k1 * innovation;
+        state[2] += k2 * innovation;
+
+        // P = P - K * (row index of P)
+        double r0 = covariance[index * 3];
+        double r1 = covariance[index * 3 + 1];
+        double r2 = covariance[index * 3 + 2];
+        covariance[0] -= k0 * r0;
+        covariance[1] -= k0 * r1;
+        covariance[2] -= k0 * r2;
+        covariance[3] -= k1 * r0;
+        covariance[4] -= k1 * r1;
+        covariance[5] -= k1 * r2;
+        covariance[6] -= k2 * r0;
+        covariance[7] -= k2 * r1;
+        covariance[8] -= k2 * r2;
+    }
+
+    public double getX() {
+        return state[0];
+    }
+
+    public double getY() {
+        return state[1];
+    }
+
+    /**
+     * @return degrees, -180 to 180
+     */
+    public double getHeading() {
+        return Math.toDegrees(wrap(state[2]));
+    }
+
+    /**
+     * @return mm the last {@link #predict} moved the robot along x; likewise y
+     */
+    public double getDeltaX() {
+        return lastDeltaX;
+    }
+
+    public double getDeltaY() {
+        return lastDeltaY;
+    }
+
+    /**
+     * @return degrees the last {@link #predict} turned the robot
+     */
+    public double getDeltaHeading() {
+        return Math.toDegrees(lastDeltaHeading);
+    }
+
+    /**
+     * @return one standard deviation of the position, mm, along its worse axis
+     */
+    public double getPositionStdDev() {
+        return Math.sqrt(Math.max(covariance[0], covariance[4]));
+    }
+
+    /**
+     * @return one standard deviation of the heading, degrees
+     */
+    public double getHeadingStdDev() {
+        return Math.toDegrees(Math.sqrt(covariance[8]));
+    }
+
+    /**
+     * @param row 0 for x, 1 for y, 2 for heading; likewise col
+     * @return the pose covariance entry, in mm and radians
+     */
+    public double getCovariance(int row, int col) {
+        return covariance[row * 3 + col];
+    }
+
+    private static double sq(double value) {
+        return value * value;
+    }
+
+    private static double wrap(double radians) {
+        return Math.atan2(Math.sin(radians), Math.cos(radians));
+    }
+
+    private static void setIdentity(double[] m) {
+        for (int i = 0; i < 9; i++) {
+            m[i] = i % 4 == 0 ? 1 : 0;
+        }
+    }
+
+    // out = a * b
+    private static void multiply(double[] a, double[] b, double[] out) {
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                out[row * 3 + col] = a[row * 3] * b[col] + a[row * 3 + 1] * b[3 + col] + a[row * 3 + 2] * b[6 + col];
+            }
+        }
+    }
+
+    // out = a * b'
+    private static void multiplyTransposed(double[] a, double[] b, double[] out) {
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                out[row * 3 + col] = a[row * 3] * b[col * 3] + a[row * 3 + 1] * b[col * 3 + 1] + a[row * 3 + 2] * b[col * 3 + 2];
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+
+/**
+ * The last few hundred poses with their times, for asking where the robot was when a camera
+ * frame was taken.
+ * <p>
+ * A ring of plain double arrays: {@link #add} overwrites the oldest pose once full, and
+ * {@link #getPose} binary searches for the two poses either side of a time and interpolates
+ * between them, turning the short way for heading. Nothing here allocates. Not thread safe; the
+ * localization thread is the only one meant to touch it.
+ */
+public class PoseHistory {
+
+    private final double[] times;
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] headings;
+    // slot the next pose goes in
+    private int next = 0;
+    private int size = 0;
+
+    /**
+     * @param capacity poses kept; at 100 updates a second, 100 covers a second of latency
+     */
+    public PoseHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        times = new double[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        headings = new double[capacity];
+    }
+
+    /**
+     * Records a pose. Times must not go backwards; a pose at the same time as the newest one
+     * replaces it.
+     *
+     * @param heading degrees
+     */
+    public void add(double time, double x, double y, double heading) {
+        if (size > 0) {
+            double newest = times[slot(size - 1)];
+            if (time < newest) {
+                throw new IllegalArgumentException("pose at " + time + " s is older than the newest, at " + newest + " s");
+            }
+            if (time == newest) {
+                int slot = slot(size - 1);
+                xs[slot] = x;
+                ys[slot] = y;
+                headings[slot] = heading;
+                return;
+            }
+        }
+        times[next] = time;
+        xs[next] = x;
+        ys[next] = y;
+        headings[next] = heading;
+        next = (next + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Finds where the robot was at time, interpolating between the poses either side.
+     *
+     * @param out filled with x, y and heading (degrees, -180 to 180); needs at least 3 elements
+     * @return false, leaving out alone, if time is before the oldest pose or after the newest
+     */
+    public boolean getPose(double time, double[] out) {
+        if (size == 0 || time < times[slot(0)] || time > times[slot(size - 1)]) {
+            return false;
+        }
+        // last pose at or before time
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (times[slot(middle)] <= time) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int before = slot(low);
+        if (low == size - 1 || times[before] == time) {
+            out[0] = xs[before];
+            out[1] = ys[before];
+            out[2] = Functions.normalizeAngle(headings[before]);
+            return true;
+        }
+        int after = slot(low + 1);
+        double fraction = (time - times[before]) / (times[after] - times[before]);
+        out[0] = xs[before] + (xs[after] - xs[before]) * fraction;
+        out[1] = ys[before] + (ys[after] - ys[before]) * fraction;
+        out[2] = Functions.normalizeAngle(headings[before] + Functions.normalizeAngle(headings[after] - headings[before]) * fraction);
+        return true;
+    }
+
+    /**
+     * Moves every pose from time on by the same amount, as if a correction made now had been
+     * known then. Poses before time stay put.
+     */
+    public void shiftSince(double time, double deltaX, double deltaY) {
+        for (int index = size - 1; index >= 0; index--) {
+            int slot = slot(index);
+            if (times[slot] < time) {
+                return;
+            }
+            xs[slot] += deltaX;
+            ys[slot] += deltaY;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the time of the oldest pose kept, or NaN if there are none
+     */
+    public double getOldestTime() {
+        return size == 0 ? Double.NaN : times[slot(0)];
+    }
+
+    /**
+     * @return the time of the newest pose, or NaN if there are none
+     */
+    public double getNewestTime() {
+        return size == 0 ? Double.NaN : times[slot(size - 1)];
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    // ring slot of the index'th oldest pose
+    private int slot(int index) {
+        return (next - size + index + times.length) % times.length;
+    }
+}
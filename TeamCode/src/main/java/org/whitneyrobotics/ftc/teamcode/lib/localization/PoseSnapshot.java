@@ -0,0 +1,44 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
+
+/**
+ * Where the robot was, and how fast it was going, at one instant. Never changes once made, so it
+ * can be handed between threads as is.
+ * <p>
+ * Field frame: positions in mm, heading in degrees from -180 to 180, velocities in mm/s and deg/s,
+ * time in seconds on the {@link org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock} the
+ * localizer runs on.
+ */
+public final class PoseSnapshot {
+
+    public final double x;
+    public final double y;
+    public final double heading;
+    public final double xVelocity;
+    public final double yVelocity;
+    public final double angularVelocity;
+    public final double time;
+
+    public PoseSnapshot(double x, double y, double heading, double xVelocity, double yVelocity, double angularVelocity, double time) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+        this.xVelocity = xVelocity;
+        this.yVelocity = yVelocity;
+        this.angularVelocity = angularVelocity;
+        this.time = time;
+    }
+
+    /**
+     * @return a new Coordinate the caller is free to change
+     */
+    public Coordinate toCoordinate() {
+        return new Coordinate(x, y, heading);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.1f, %.1f, %.1f deg) at %.3f s", x, y, heading, time);
+    }
+}
@@ -0,0 +1,159 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+/**
+ * Field pose from three {@link TrackingWheel}s, with no hardware in it so it runs on a laptop.
+ * <p>
+ * Each wheel reads how far its contact point moved along its own direction, which is a fixed
+ * linear mix of the robot's forward, left and turning motion. The mix is inverted once up front,
+ * so any three wheels work as long as they pin down all three motions (two parallel wheels and a
+ * third across them is the usual layout). Each update then treats the step as motion along a
+ * circular arc, the pose exponential, which is exact whenever the robot's forward, left and
+ * turning speeds held steady through the step, and needs no small-step assumption for turns.
+ * <p>
+ * {@link #update} allocates nothing. Heading is kept in radians internally and handed out in
+ * degrees like the rest of the code. ThreeWheelOdometryTest checks the integration against arcs
+ * whose end pose is known exactly.
+ */
+public class ThreeWheelOdometry {
+
+    // below this, sin(t)/t and (1 - cos(t))/t come from their series instead of dividing by t
+    private static final double SMALL_ANGLE = 1E-6;
+
+    private final double[] mmPerTick = new double[3];
+    // rows map the three wheel distances to forward, left and turn (radians)
+    private final double[][] inverse = new double[3][3];
+
+    private double x;
+    private double y;
+    private double heading;
+    private double lastA = Double.NaN;
+    private double lastB;
+    private double lastC;
+
+    private double deltaForward;
+    private double deltaLeft;
+    private double deltaHeading;
+
+    public ThreeWheelOdometry(TrackingWheel a, TrackingWheel b, TrackingWheel c) {
+        TrackingWheel[] wheels = {a, b, c};
+        double[][] m = new double[3][3];
+        for (int i = 0; i < 3; i++) {
+            double cos = Math.cos(Math.toRadians(wheels[i].angle));
+            double sin = Math.sin(Math.toRadians(wheels[i].angle));
+            // velocity of the contact point, (v + w x r), along the wheel's direction
+            m[i][0] = cos;
+            m[i][1] = sin;
+            m[i][2] = wheels[i].x * sin - wheels[i].y * cos;
+            mmPerTick[i] = wheels[i].mmPerTick;
+        }
+        double det = m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1])
+                - m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0])
+                + m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+        if (Math.abs(det) < 1E-9) {
+            throw new IllegalArgumentException("tracking wheels can't tell every motion apart; check their positions and angles");
+        }
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                // adjugate: transposed cofactors
+                int r1 = (col + 1) % 3, r2 = (col + 2) % 3;
+                int c1 = (row + 1) % 3, c2 = (row + 2) % 3;
+                inverse[row][col] = (m[r1][c1] * m[r2][c2] - m[r1][c2] * m[r2][c1]) / det;
+            }
+        }
+    }
+
+    /**
+     * Puts the robot at a field pose. The next {@link #update} only records the encoders it is
+     * given, so the pose moves from there.
+     *
+     * @param heading degrees
+     */
+    public void setPose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = Math.toRadians(heading);
+        lastA = Double.NaN;
+        deltaForward = 0;
+        deltaLeft = 0;
+        deltaHeading = 0;
+    }
+
+    /**
+     * Moves the pose on by what the wheels turned since the last call.
+     *
+     * @param a encoder position of the first wheel, ticks; likewise b and c
+     */
+    public void update(double a, double b, double c) {
+        if (Double.isNaN(lastA)) {
+            lastA = a;
+            lastB = b;
+            lastC = c;
+            return;
+        }
+        double da = (a - lastA) * mmPerTick[0];
+        double db = (b - lastB) * mmPerTick[1];
+        double dc = (c - lastC) * mmPerTick[2];
+        lastA = a;
+        lastB = b;
+        lastC = c;
+
+        deltaForward = inverse[0][0] * da + inverse[0][1] * db + inverse[0][2] * dc;
+        deltaLeft = inverse[1][0] * da + inverse[1][1] * db + inverse[1][2] * dc;
+        deltaHeading = inverse[2][0] * da + inverse[2][1] * db + inverse[2][2] * dc;
+
+        double sinOverT;
+        double cosTermOverT;
+        if (Math.abs(deltaHeading) < SMALL_ANGLE) {
+            sinOverT = 1 - deltaHeading * deltaHeading / 6;
+            cosTermOverT = deltaHeading / 2;
+        } else {
+            sinOverT = Math.sin(deltaHeading) / deltaHeading;
+            cosTermOverT = (1 - Math.cos(deltaHeading)) / deltaHeading;
+        }
+        // the step in the robot frame at the start of it
+        double stepForward = sinOverT * deltaForward - cosTermOverT * deltaLeft;
+        double stepLeft = cosTermOverT * deltaForward + sinOverT * deltaLeft;
+
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        x += cos * stepForward - sin * stepLeft;
+        y += sin * stepForward + cos * stepLeft;
+        heading += deltaHeading;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return degrees, -180 to 180
+     */
+    public double getHeading() {
+        return Math.toDegrees(Math.atan2(Math.sin(heading), Math.cos(heading)));
+    }
+
+    /**
+     * @return mm the robot moved forward in the last update, in its own frame
+     */
+    public double getDeltaForward() {
+        return deltaForward;
+    }
+
+    /**
+     * @return mm the robot moved left in the last update, in its own frame
+     */
+    public double getDeltaLeft() {
+        return deltaLeft;
+    }
+
+    /**
+     * @return degrees the robot turned in the last update
+     */
+    public double getDeltaHeading() {
+        return Math.toDegrees(deltaHeading);
+    }
+}
@@ -0,0 +1,34 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+/**
+ * Where an unpowered odometry wheel sits on the robot and which way it measures.
+ * <p>
+ * Robot frame: x forward, y left, mm from the center of rotation. Angle is the direction, in
+ * degrees counterclockwise from forward, the robot has to move for the encoder to count up: 0 for
+ * a wheel rolling forward, 90 for one rolling left, 180 or a negative mmPerTick if its encoder
+ * is wired backwards.
+ */
+public final class TrackingWheel {
+
+    public final double x;
+    public final double y;
+    public final double angle;
+    public final double mmPerTick;
+
+    public TrackingWheel(double x, double y, double angle, double mmPerTick) {
+        if (mmPerTick == 0 || Double.isNaN(mmPerTick)) {
+            throw new IllegalArgumentException("mmPerTick must be nonzero");
+        }
+        this.x = x;
+        this.y = y;
+        this.angle = angle;
+        this.mmPerTick = mmPerTick;
+    }
+
+    /**
+     * @return mm the wheel rolls per encoder tick
+     */
+    public static double mmPerTick(double wheelRadius, double ticksPerRev, double gearRatio) {
+        return 2 * Math.PI * wheelRadius * gearRatio / ticksPerRev;
+    }
+}
@@ -0,0 +1,97 @@
+package org.whitneyrobotics.ftc.teamcode.lib.motion;
+
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+
+/**
+ * An {@link InputShaper} each for forward, strafe and turn, set up from a driver's preferences.
+ * Mecanum wheels let go sideways sooner than forwards, so strafe gets its own limits.
+ * <pre>
+ *     shaper.update(gamepad1.left_stick_x, gamepad1.left_stick_y, gamepad1.right_stick_x, slowMode ? 1 / 3.0 : 1);
+ *     drivetrain.operateMecanumDrive(shaper.getStrafe(), shaper.getForward(), shaper.getTurn(), heading);
+ * </pre>
+ */
+public class DriveInputShaper {
+
+    /**
+     * Accelerations are in drive power per second. Jerk is set by how long the acceleration takes
+     * to ramp up, so a driver can be made gentler without touching every limit.
+     */
+    public enum Driver {
+        STANDARD(0.05, 0.5, 0.5, 4, 3, 5, 0.15),
+        SMOOTH(0.08, 0.8, 0.7, 2.5, 2, 3.5, 0.25),
+        AGGRESSIVE(0.03, 0.3, 0.3, 6, 4.5, 8, 0.1);
+
+        public final double deadband;
+        public final double translationExpo;
+        public final double turnExpo;
+        public final double forwardAcceleration;
+        public final double strafeAcceleration;
+        public final double turnAcceleration;
+        public final double rampTime; // s to reach full acceleration
+
+        Driver(double deadband, double translationExpo, double turnExpo, double forwardAcceleration, double strafeAcceleration, double turnAcceleration, double rampTime) {
+            this.deadband = deadband;
+            this.translationExpo = translationExpo;
+            this.turnExpo = turnExpo;
+            this.forwardAcceleration = forwardAcceleration;
+            this.strafeAcceleration = strafeAcceleration;
+            this.turnAcceleration = turnAcceleration;
+            this.rampTime = rampTime;
+        }
+    }
+
+    private final Driver driver;
+    private final InputShaper forward;
+    private final InputShaper strafe;
+    private final InputShaper turn;
+
+    public DriveInputShaper(Driver driver, ControlClock clock) {
+        this.driver = driver;
+        forward = new InputShaper(driver.deadband, driver.translationExpo, driver.forwardAcceleration, driver.forwardAcceleration / driver.rampTime, clock);
+        strafe = new InputShaper(driver.deadband, driver.translationExpo, driver.strafeAcceleration, driver.strafeAcceleration / driver.rampTime, clock);
+        turn = new InputShaper(driver.deadband, driver.turnExpo, driver.turnAcceleration, driver.turnAcceleration / driver.rampTime, clock);
+    }
+
+    public DriveInputShaper(Driver driver) {
+        this(driver, ControlClock.SYSTEM);
+    }
+
+    public void setClock(ControlClock clock) {
+        forward.setClock(clock);
+        strafe.setClock(clock);
+        turn.setClock(clock);
+    }
+
+    /**
+     * Call once per loop with the raw sticks, then read the shaped commands back.
+     *
+     * @param scale multiplies every axis, e.g. for a slow mode
+     */
+    public void update(double strafeInput, double forwardInput, double turnInput, double scale) {
+        strafe.calculate(strafeInput, scale);
+        forward.calculate(forwardInput, scale);
+        turn.calculate(turnInput, scale);
+    }
+
+    public void reset() {
+        forward.reset(0);
+        strafe.reset(0);
+        turn.reset(0);
+    }
+
+    public double getForward() {
+        return forward.getOutput();
+    }
+
+    public double getStrafe() {
+        return strafe.getOutput();
+    }
+
+    public double getTurn() {
+        return turn.getOutput();
+    }
+
+    public Driver getDriver() {
+        return driver;
+    }
+}
@@ -0,0 +1,124 @@
+package org.whitneyrobotics.ftc.teamcode.lib.motion;
+
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+
+/**
+ * Shapes one stick axis into a drive command: deadband, then an expo curve, then limits on how
+ * fast the command may change (acceleration) and how fast that rate may change (jerk).
+ * <p>
+ * The command heads for the shaped stick as fast as the limits allow while still being able to
+ * slow its rate down in time, so it arrives without overshooting. {@link RateLimiter} steps the
+ * rate instantly, which is what breaks the wheels loose; ramping the rate at maxJerk doesn't.
+ * Nothing is allocated per call.
+ */
+public class InputShaper {
+
+    private final double deadband;
+    private final double expo;
+    private final double maxAcceleration;
+    private final double maxJerk;
+    private ControlClock clock;
+
+    private double output = 0;
+    private double rate = 0;
+    private double lastTime = Double.NaN;
+
+    /**
+     * @param deadband        stick travel around center treated as zero, 0 to 1
+     * @param expo            0 is linear, 1 is a pure cubic; in between blends the two
+     * @param maxAcceleration fastest the command may change, per second
+     * @param maxJerk         fastest the command's rate may change, per second squared
+     */
+    public InputShaper(double deadband, double expo, double maxAcceleration, double maxJerk, ControlClock clock) {
+        if (deadband < 0 || deadband >= 1) {
+            throw new IllegalArgumentException("deadband must be at least 0 and below 1");
+        }
+        if (expo < 0 || expo > 1) {
+            throw new IllegalArgumentException("expo must be between 0 and 1");
+        }
+        if (!(maxAcceleration > 0) || !(maxJerk > 0)) {
+            throw new IllegalArgumentException("maxAcceleration and maxJerk must be positive");
+        }
+        this.deadband = deadband;
+        this.expo = expo;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        this.clock = clock;
+    }
+
+    public InputShaper(double deadband, double expo, double maxAcceleration, double maxJerk) {
+        this(deadband, expo, maxAcceleration, maxJerk, ControlClock.SYSTEM);
+    }
+
+    public void setClock(ControlClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Applies deadband and expo only, with no limits; -1 to 1 in, -1 to 1 out.
+     */
+    public double curve(double input) {
+        double magnitude = Math.min(Math.abs(input), 1);
+        if (magnitude <= deadband) {
+            return 0;
+        }
+        // rescale so the command starts from zero at the edge of the deadband
+        magnitude = (magnitude - deadband) / (1 - deadband);
+        magnitude = (1 - expo) * magnitude + expo * magnitude * magnitude * magnitude;
+        return Math.signum(input) * magnitude;
+    }
+
+    public double calculate(double input) {
+        return calculate(input, 1);
+    }
+
+    /**
+     * @param scale multiplies the curved stick before the limits, so switching to a slow mode
+     *              ramps down instead of stepping
+     * @return the shaped command
+     */
+    public double calculate(double input, double scale) {
+        double target = curve(input) * scale;
+        double time = clock.getTime();
+        if (Double.isNaN(lastTime)) {
+            lastTime = time;
+            return output;
+        }
+        double dt = time - lastTime;
+        lastTime = time;
+        if (dt <= 0) {
+            return output;
+        }
+
+        double error = target - output;
+        double maxRateChange = maxJerk * dt;
+        // fastest rate that can still be brought to zero at maxJerk before reaching the target,
+        // allowing for the rate only changing once per loop
+        double brakingRate = Math.sqrt(maxRateChange * maxRateChange / 4 + 2 * maxJerk * Math.abs(error)) - maxRateChange / 2;
+        double desiredRate = Math.signum(error) * Math.min(maxAcceleration, brakingRate);
+        rate += Math.max(-maxRateChange, Math.min(maxRateChange, desiredRate - rate));
+
+        double step = rate * dt;
+        if (Math.abs(step) >= Math.abs(error) && Math.signum(step) == Math.signum(error)) {
+            // would pass the target this loop; land on it instead
+            output = target;
+            rate = 0;
+        } else {
+            output += step;
+        }
+        return output;
+    }
+
+    /**
+     * Jumps straight to value with no rate, e.g. after the drivetrain was driven by something else.
+     */
+    public void reset(double value) {
+        output = value;
+        rate = 0;
+        lastTime = Double.NaN;
+    }
+
+    public double getOutput() {
+        return output;
+    }
+}
@@ -1,5 +1,4 @@
 package org.whitneyrobotics.ftc.teamcode.lib.motion;
-import org.firstinspires.ftc.robotcore.external.Func;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 
 public class MotionProfile {
@@ -9,29 +8,126 @@ public class MotionProfile {
     double MAXIMUM_VELOCITY = 700;
     double increment;
     double[] targetVelocities;
+    double[] targetAccelerations;
     double initalPos;
 
     public MotionProfile(double initialPos, double finalPos,int numOfPoints){
+        if (numOfPoints < 2) {
+            throw new IllegalArgumentException("a motion profile needs at least two points");
+        }
         this.numOfPoints = numOfPoints;
-        increment = (finalPos - initialPos)/ this.numOfPoints;
-        pointArray = getPoints(); 
-        targetVelocities = getTargetVelocities();
         this.initalPos = initialPos;
+        increment = (finalPos - initialPos)/ this.numOfPoints;
+        pointArray = calculatePoints();
+        targetVelocities = calculateTargetVelocities();
+        targetAccelerations = calculateTargetAccelerations();
     }
 
-
+    /**
+     * Speed at each point, counting down to 0 at the last point. The array is shared, don't modify it.
+     */
     public double[] getTargetVelocities(){
+        return targetVelocities;
+    }
+
+    /**
+     * Acceleration at each point along the direction of travel. The array is shared, don't modify it.
+     */
+    public double[] getTargetAccelerations(){
+        return targetAccelerations;
+    }
+
+    /**
+     * Positions of the points, evenly spaced and in order from the initial towards the final
+     * position. The array is shared, don't modify it.
+     */
+    public double[] getPoints(){
+        return pointArray;
+    }
+
+    public int size(){
+        return numOfPoints;
+    }
+
+    /**
+     * Binary search for the profile segment containing {@code position}. Works for profiles
+     * going either way, since the points always move monotonically towards the final position.
+     *
+     * @return the index i with {@code position} between point i and point i + 1, clamped to the
+     * first and last segment
+     */
+    public int indexAt(double position){
+        // flip decreasing profiles so the search only has to deal with increasing points
+        double direction = increment >= 0 ? 1 : -1;
+        double target = direction * position;
+        int low = 0;
+        int high = numOfPoints - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (direction * pointArray[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the point nearest {@code position}
+     */
+    public int indexOfClosestPoint(double position){
+        int i = indexAt(position);
+        return Math.abs(pointArray[i + 1] - position) < Math.abs(pointArray[i] - position) ? i + 1 : i;
+    }
+
+    /**
+     * Target speed at {@code position}, interpolated between the two points around it.
+     */
+    public double getVelocityAt(double position){
+        int i = indexAt(position);
+        return targetVelocities[i] + (targetVelocities[i + 1] - targetVelocities[i]) * fractionOfSegment(i, position);
+    }
+
+    /**
+     * Target acceleration at {@code position}, interpolated between the two points around it.
+     */
+    public double getAccelerationAt(double position){
+        int i = indexAt(position);
+        return targetAccelerations[i] + (targetAccelerations[i + 1] - targetAccelerations[i]) * fractionOfSegment(i, position);
+    }
+
+    // 0 at point i, 1 at point i + 1, clamped so positions off either end get the end values
+    private double fractionOfSegment(int i, double position){
+        if (increment == 0) {
+            return 0;
+        }
+        return Functions.constrain((position - pointArray[i]) / increment, 0, 1);
+    }
+
+    private double[] calculateTargetVelocities(){
         double[] targetVelocities = new double[numOfPoints];
         targetVelocities[numOfPoints-1] = 0;
         for (int i = numOfPoints - 2; i >= 0; i--) {
-            double distance = increment;
+            double distance = Math.abs(increment);
             double targetVelocity = Math.sqrt(Math.pow(targetVelocities[i + 1], 2) + 2 * MAXIMUM_ACCELERATION * distance);
             targetVelocities[i] = Functions.constrain(targetVelocity, -MAXIMUM_VELOCITY, MAXIMUM_VELOCITY);
         }
         return targetVelocities;
     }
 
-    public double[] getPoints(){
+    // constant acceleration between points: v1^2 = v0^2 + 2 * a * d
+    private double[] calculateTargetAccelerations(){
+        double[] targetAccelerations = new double[numOfPoints];
+        double distance = Math.abs(increment);
+        for (int i = 0; i < numOfPoints - 1; i++) {
+            targetAccelerations[i] = distance == 0 ? 0 : (Math.pow(targetVelocities[i + 1], 2) - Math.pow(targetVelocities[i], 2)) / (2 * distance);
+        }
+        targetAccelerations[numOfPoints - 1] = targetAccelerations[numOfPoints - 2];
+        return targetAccelerations;
+    }
+
+    private double[] calculatePoints(){
         double[] pointArray = new double[numOfPoints];
         double previousPos = initalPos;
         for(int i = 0; i < numOfPoints; i++){
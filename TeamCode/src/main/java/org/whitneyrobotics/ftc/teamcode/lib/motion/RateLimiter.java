@@ -1,5 +1,6 @@
 package org.whitneyrobotics.ftc.teamcode.lib.motion;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 
 public class RateLimiter {
@@ -8,10 +9,16 @@ public class RateLimiter {
     public double maxRate;
     public boolean firstCall = true;
     public double lastKnownTime;
+    private ControlClock clock;
 
-    public RateLimiter(double maxRate, double firstInput) {
+    public RateLimiter(double maxRate, double firstInput, ControlClock clock) {
         this.maxRate = maxRate;
         rateLimitedOutput = firstInput;
+        this.clock = clock;
+    }
+
+    public RateLimiter(double maxRate, double firstInput) {
+        this(maxRate, firstInput, ControlClock.SYSTEM);
     }
 
     /**
@@ -21,13 +28,14 @@ public class RateLimiter {
      * @return Returns the new limited rate
      */
     public double calculateOutput(double input) {
+        double time = clock.getTime();
         if (firstCall) {
-            lastKnownTime = System.nanoTime() / 1E9;
+            lastKnownTime = time;
             lastKnownOutput = rateLimitedOutput;
             firstCall = false;
         }
-        double time = System.nanoTime() / 1E9;
-        double maxChange = (time - lastKnownTime) * maxRate;
+        // a clock that was set back (FakeClock) must not flip the limits around
+        double maxChange = Math.max(time - lastKnownTime, 0) * maxRate;
         rateLimitedOutput += Functions.constrain(input - lastKnownOutput, -maxChange, maxChange);
         lastKnownOutput = rateLimitedOutput;
         lastKnownTime = time;
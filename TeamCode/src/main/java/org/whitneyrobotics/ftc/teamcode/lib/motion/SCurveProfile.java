@@ -0,0 +1,87 @@
+package org.whitneyrobotics.ftc.teamcode.lib.motion;
+
+/**
+ * A trapezoid with the corners rounded off: acceleration ramps up and down at maxJerk instead of
+ * stepping, so mechanisms aren't jolted at the start and end of each ramp. Short moves skip the
+ * cruise, and very short ones never reach maxAcceleration or maxDeceleration either.
+ */
+public class SCurveProfile extends TimedProfile {
+
+    private static final int PEAK_VELOCITY_ITERATIONS = 60;
+
+    private final double peakVelocity;
+
+    public SCurveProfile(double startPosition, double endPosition, double maxVelocity, double maxAcceleration, double maxDeceleration, double maxJerk) {
+        super(startPosition, endPosition);
+        checkLimit("maxVelocity", maxVelocity);
+        checkLimit("maxAcceleration", maxAcceleration);
+        checkLimit("maxDeceleration", maxDeceleration);
+        checkLimit("maxJerk", maxJerk);
+
+        double distance = getDistance();
+        double velocity = maxVelocity;
+        if (rampDistance(velocity, maxAcceleration, maxJerk) + rampDistance(velocity, maxDeceleration, maxJerk) > distance) {
+            // too short to cruise; the distance both ramps cover only grows with the peak velocity,
+            // so bisect for the peak once here and keep every query closed form
+            double low = 0;
+            double high = maxVelocity;
+            for (int i = 0; i < PEAK_VELOCITY_ITERATIONS; i++) {
+                double mid = (low + high) / 2;
+                if (rampDistance(mid, maxAcceleration, maxJerk) + rampDistance(mid, maxDeceleration, maxJerk) > distance) {
+                    high = mid;
+                } else {
+                    low = mid;
+                }
+            }
+            velocity = low;
+        }
+        double cruiseDistance = distance - rampDistance(velocity, maxAcceleration, maxJerk) - rampDistance(velocity, maxDeceleration, maxJerk);
+
+        addRamp(velocity, maxAcceleration, maxJerk, 1);
+        addPhase(velocity == 0 ? 0 : Math.max(cruiseDistance, 0) / velocity, 0, 0);
+        addRamp(velocity, maxDeceleration, maxJerk, -1);
+        peakVelocity = velocity;
+    }
+
+    public SCurveProfile(double startPosition, double endPosition, double maxVelocity, double maxAcceleration, double maxJerk) {
+        this(startPosition, endPosition, maxVelocity, maxAcceleration, maxAcceleration, maxJerk);
+    }
+
+    /**
+     * Time to change speed by {@code velocity} with acceleration ramping at {@code jerk} and capped at {@code acceleration}.
+     */
+    private static double rampTime(double velocity, double acceleration, double jerk) {
+        if (velocity >= acceleration * acceleration / jerk) {
+            return velocity / acceleration + acceleration / jerk;
+        }
+        // acceleration never reaches its cap, it ramps straight up and back down
+        return 2 * Math.sqrt(velocity / jerk);
+    }
+
+    /**
+     * The ramp is symmetric about its middle, so its average speed is half the change.
+     */
+    private static double rampDistance(double velocity, double acceleration, double jerk) {
+        return velocity / 2 * rampTime(velocity, acceleration, jerk);
+    }
+
+    // sign is 1 to speed up to velocity, -1 to slow down from it
+    private void addRamp(double velocity, double acceleration, double jerk, double sign) {
+        if (velocity >= acceleration * acceleration / jerk) {
+            addPhase(acceleration / jerk, 0, sign * jerk);
+            addPhase(velocity / acceleration - acceleration / jerk, sign * acceleration, 0);
+            addPhase(acceleration / jerk, sign * acceleration, -sign * jerk);
+        } else {
+            double peakAcceleration = Math.sqrt(velocity * jerk);
+            addPhase(peakAcceleration / jerk, 0, sign * jerk);
+            addPhase(peakAcceleration / jerk, sign * peakAcceleration, -sign * jerk);
+        }
+    }
+
+    /**
+     * @return the fastest the profile goes, which is below maxVelocity on short moves
+     */
+    public double getPeakVelocity() {
+        return peakVelocity;
+    }
+}
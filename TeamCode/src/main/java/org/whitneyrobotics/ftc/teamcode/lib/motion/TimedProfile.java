@@ -0,0 +1,132 @@
+package org.whitneyrobotics.ftc.teamcode.lib.motion;
+
+/**
+ * A rest to rest motion profile that answers position, velocity and acceleration at any time.
+ * <p>
+ * The profile is stored as at most seven phases of constant jerk, each with the state it starts
+ * in, so a query is a short scan over the phases and a cubic, with nothing allocated and nothing
+ * sampled ahead of time. Limits are given for the direction of travel and are positive whichever
+ * way the profile goes.
+ *
+ * @see TrapezoidProfile
+ * @see SCurveProfile
+ */
+public abstract class TimedProfile {
+
+    private static final int MAX_PHASES = 7;
+
+    private final double startPosition;
+    private final double endPosition;
+    // +1 or -1; phases are planned for the distance and flipped when the profile goes backwards
+    private final double direction;
+
+    private final double[] phaseStartTime = new double[MAX_PHASES];
+    private final double[] phaseStartPosition = new double[MAX_PHASES];
+    private final double[] phaseStartVelocity = new double[MAX_PHASES];
+    private final double[] phaseStartAcceleration = new double[MAX_PHASES];
+    private final double[] phaseJerk = new double[MAX_PHASES];
+    private int phaseCount = 0;
+    private double duration = 0;
+
+    TimedProfile(double startPosition, double endPosition) {
+        this.startPosition = startPosition;
+        this.endPosition = endPosition;
+        direction = endPosition >= startPosition ? 1 : -1;
+    }
+
+    static void checkLimit(String name, double limit) {
+        if (!(limit > 0) || Double.isInfinite(limit)) {
+            throw new IllegalArgumentException(name + " must be positive and finite");
+        }
+    }
+
+    /**
+     * @return distance from start to end, always positive
+     */
+    double getDistance() {
+        return Math.abs(endPosition - startPosition);
+    }
+
+    /**
+     * Appends a phase starting where the last one ended. Phases of zero length are skipped.
+     */
+    void addPhase(double phaseDuration, double startAcceleration, double jerk) {
+        if (phaseDuration <= 0) {
+            return;
+        }
+        double position = 0;
+        double velocity = 0;
+        if (phaseCount > 0) {
+            int last = phaseCount - 1;
+            double t = duration - phaseStartTime[last];
+            position = phaseStartPosition[last] + phaseStartVelocity[last] * t + phaseStartAcceleration[last] * t * t / 2 + phaseJerk[last] * t * t * t / 6;
+            velocity = phaseStartVelocity[last] + phaseStartAcceleration[last] * t + phaseJerk[last] * t * t / 2;
+        }
+        phaseStartTime[phaseCount] = duration;
+        phaseStartPosition[phaseCount] = position;
+        phaseStartVelocity[phaseCount] = velocity;
+        phaseStartAcceleration[phaseCount] = startAcceleration;
+        phaseJerk[phaseCount] = jerk;
+        phaseCount++;
+        duration += phaseDuration;
+    }
+
+    // the phase being driven at t; t is already known to be inside the profile
+    private int phaseAt(double t) {
+        int phase = phaseCount - 1;
+        while (phase > 0 && phaseStartTime[phase] > t) {
+            phase--;
+        }
+        return phase;
+    }
+
+    public double getPosition(double t) {
+        if (t <= 0) {
+            return startPosition;
+        }
+        if (t >= duration) {
+            return endPosition;
+        }
+        int i = phaseAt(t);
+        double tau = t - phaseStartTime[i];
+        double travelled = phaseStartPosition[i] + phaseStartVelocity[i] * tau + phaseStartAcceleration[i] * tau * tau / 2 + phaseJerk[i] * tau * tau * tau / 6;
+        return startPosition + direction * travelled;
+    }
+
+    public double getVelocity(double t) {
+        if (t <= 0 || t >= duration) {
+            return 0;
+        }
+        int i = phaseAt(t);
+        double tau = t - phaseStartTime[i];
+        return direction * (phaseStartVelocity[i] + phaseStartAcceleration[i] * tau + phaseJerk[i] * tau * tau / 2);
+    }
+
+    public double getAcceleration(double t) {
+        if (t < 0 || t >= duration) {
+            return 0;
+        }
+        int i = phaseAt(t);
+        double tau = t - phaseStartTime[i];
+        return direction * (phaseStartAcceleration[i] + phaseJerk[i] * tau);
+    }
+
+    /**
+     * @return seconds from start to end
+     */
+    public double getDuration() {
+        return duration;
+    }
+
+    public boolean isFinished(double t) {
+        return t >= duration;
+    }
+
+    public double getStartPosition() {
+        return startPosition;
+    }
+
+    public double getEndPosition() {
+        return endPosition;
+    }
+}
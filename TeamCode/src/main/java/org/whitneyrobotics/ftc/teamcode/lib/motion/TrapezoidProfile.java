@@ -0,0 +1,40 @@
+package org.whitneyrobotics.ftc.teamcode.lib.motion;
+
+/**
+ * Speeds up at maxAcceleration, cruises at maxVelocity and slows down at maxDeceleration.
+ * Short moves never reach maxVelocity and become a triangle instead.
+ */
+public class TrapezoidProfile extends TimedProfile {
+
+    private final double peakVelocity;
+
+    public TrapezoidProfile(double startPosition, double endPosition, double maxVelocity, double maxAcceleration, double maxDeceleration) {
+        super(startPosition, endPosition);
+        checkLimit("maxVelocity", maxVelocity);
+        checkLimit("maxAcceleration", maxAcceleration);
+        checkLimit("maxDeceleration", maxDeceleration);
+
+        double distance = getDistance();
+        // distance needed to reach v and stop again is v^2 / 2a + v^2 / 2d
+        double velocity = Math.min(maxVelocity, Math.sqrt(2 * distance * maxAcceleration * maxDeceleration / (maxAcceleration + maxDeceleration)));
+        double accelerationTime = velocity / maxAcceleration;
+        double decelerationTime = velocity / maxDeceleration;
+        double cruiseDistance = distance - velocity * velocity / (2 * maxAcceleration) - velocity * velocity / (2 * maxDeceleration);
+
+        addPhase(accelerationTime, maxAcceleration, 0);
+        addPhase(velocity == 0 ? 0 : Math.max(cruiseDistance, 0) / velocity, 0, 0);
+        addPhase(decelerationTime, -maxDeceleration, 0);
+        peakVelocity = velocity;
+    }
+
+    public TrapezoidProfile(double startPosition, double endPosition, double maxVelocity, double maxAcceleration) {
+        this(startPosition, endPosition, maxVelocity, maxAcceleration, maxAcceleration);
+    }
+
+    /**
+     * @return the fastest the profile goes, which is below maxVelocity on short moves
+     */
+    public double getPeakVelocity() {
+        return peakVelocity;
+    }
+}
@@ -0,0 +1,90 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+/**
+ * Finds the path point closest to the robot without scanning the whole path every loop.
+ * <p>
+ * The robot only moves a few points along the path per loop, so each update searches a fixed
+ * number of points forward from the last closest index using squared distances. That keeps the
+ * cost per loop the same no matter how densely the path is injected. If the best point in the
+ * window is further than the rescan distance away (robot got pushed off the path), the whole
+ * path is searched once to pick the tracker back up. While the robot stays that far off, the
+ * tracker keeps to the window from there; it only rescans again once the robot has come back
+ * within the distance and left it a second time.
+ */
+public class ClosestPointTracker {
+
+    private final PathBuffer points;
+    private final int windowSize;
+    private final double rescanDistanceSquared;
+
+    private int index = 0;
+    private double distanceSquared = Double.MAX_VALUE;
+    // set by a whole-path search, cleared once the robot is back within the rescan distance
+    private boolean rescanned = false;
+
+    /**
+     * @param windowSize     how many points past the last closest point to search
+     * @param rescanDistance distance from the path, in mm, beyond which the whole path is searched
+     */
+    public ClosestPointTracker(PathBuffer points, int windowSize, double rescanDistance) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be at least 1");
+        }
+        if (rescanDistance <= 0) {
+            throw new IllegalArgumentException("rescanDistance must be positive");
+        }
+        this.points = points;
+        this.windowSize = windowSize;
+        this.rescanDistanceSquared = rescanDistance * rescanDistance;
+    }
+
+    public ClosestPointTracker(PathBuffer points) {
+        this(points, PurePursuitRobotConstants.CLOSEST_POINT_WINDOW, PurePursuitRobotConstants.CLOSEST_POINT_RESCAN_DISTANCE);
+    }
+
+    /**
+     * @return index of the closest path point to (x, y)
+     */
+    public int update(double x, double y) {
+        int end = Math.min(index + windowSize, points.size() - 1);
+        search(x, y, index, end);
+        if (distanceSquared <= rescanDistanceSquared) {
+            rescanned = false;
+        } else if (!rescanned) {
+            search(x, y, 0, points.size() - 1);
+            rescanned = true;
+        }
+        return index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double getDistance() {
+        return Math.sqrt(distanceSquared);
+    }
+
+    public void reset() {
+        index = 0;
+        distanceSquared = Double.MAX_VALUE;
+        rescanned = false;
+    }
+
+    // inclusive on both ends, keeps the first point on ties like Functions.calculateIndexOfSmallestValue
+    private void search(double x, double y, int start, int end) {
+        int bestIndex = start;
+        double best = Double.MAX_VALUE;
+        for (int i = start; i <= end; i++) {
+            double dx = points.getX(i) - x;
+            double dy = points.getY(i) - y;
+            double d = dx * dx + dy * dy;
+            if (d < best) {
+                best = d;
+                bestIndex = i;
+            }
+        }
+        index = bestIndex;
+        distanceSquared = best;
+    }
+}
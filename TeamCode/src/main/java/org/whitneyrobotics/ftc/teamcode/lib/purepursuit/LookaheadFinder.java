@@ -0,0 +1,95 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+/**
+ * Finds where the lookahead circle around the robot crosses the path. Shared by the swerve and
+ * strafe followers.
+ * <p>
+ * Segments are checked in order starting from the current lookahead segment. The search stops at
+ * the first intersection that is further along the path than the current lookahead point. It also
+ * never looks past {@link PurePursuitRobotConstants#LOOKAHEAD_WINDOW_SCALE} lookahead distances of
+ * arc length beyond the closest point, so the cost per loop does not grow with the length of the path.
+ * If no new intersection is found, the previous lookahead point is kept.
+ */
+public class LookaheadFinder {
+
+    private final PathBuffer points;
+    private final double lookaheadDistance;
+    private final double windowLength;
+
+    public LookaheadFinder(PathBuffer points, double lookaheadDistance, double windowScale) {
+        if (lookaheadDistance <= 0) {
+            throw new IllegalArgumentException("lookaheadDistance must be positive");
+        }
+        if (windowScale < 1) {
+            throw new IllegalArgumentException("windowScale must be at least 1");
+        }
+        this.points = points;
+        this.lookaheadDistance = lookaheadDistance;
+        this.windowLength = lookaheadDistance * windowScale;
+    }
+
+    public LookaheadFinder(PathBuffer points, double lookaheadDistance) {
+        this(points, lookaheadDistance, PurePursuitRobotConstants.LOOKAHEAD_WINDOW_SCALE);
+    }
+
+    /**
+     * Same as the full update, searching all the way to the end of the path.
+     */
+    public boolean update(double robotX, double robotY, int closestIndex, LookaheadPoint lookahead) {
+        return update(robotX, robotY, closestIndex, lookahead, points.size() - 1);
+    }
+
+    /**
+     * Moves {@code lookahead} to the next intersection of the lookahead circle with the path.
+     *
+     * @param closestIndex index of the path point closest to the robot
+     * @param lookahead    current lookahead point, updated in place
+     * @param endIndex     the lookahead point never goes past this path index, e.g. the next stop
+     * @return true if a new intersection was found, false if {@code lookahead} was left as it was
+     */
+    public boolean update(double robotX, double robotY, int closestIndex, LookaheadPoint lookahead, int endIndex) {
+        double lastProgress = lookahead.getProgress();
+        double windowEnd = points.getDistance(closestIndex) + windowLength;
+
+        for (int i = lookahead.getSegmentIndex(); i < endIndex; i++) {
+            if (points.getDistance(i) > windowEnd) {
+                break;
+            }
+
+            double startX = points.getX(i);
+            double startY = points.getY(i);
+            double dX = points.getX(i + 1) - startX;
+            double dY = points.getY(i + 1) - startY;
+            double fX = startX - robotX;
+            double fY = startY - robotY;
+
+            double a = dX * dX + dY * dY;
+            double b = 2 * (fX * dX + fY * dY);
+            double c = fX * fX + fY * fY - lookaheadDistance * lookaheadDistance;
+
+            double discriminant = b * b - 4 * a * c;
+            if (a == 0 || discriminant < 0) {
+                // duplicate point or the circle misses this segment
+                continue;
+            }
+            discriminant = Math.sqrt(discriminant);
+
+            // t1 <= t2 since a and the discriminant are both nonnegative; t1 is where the segment
+            // enters the circle and t2 is where it leaves, so check t1 first
+            // HIT:  Impale (t1 hit, t2 hit), Poke (t1 hit, t2 > 1), ExitWound (t1 < 0, t2 hit)
+            // MISS: FallShort (t1 > 1, t2 > 1), Past (t1 < 0, t2 < 0), CompletelyInside (t1 < 0, t2 > 1)
+            double t1 = (-b - discriminant) / (2 * a);
+            double t2 = (-b + discriminant) / (2 * a);
+
+            if (t1 >= 0 && t1 <= 1 && i + t1 > lastProgress) {
+                lookahead.set(points, i, t1);
+                return true;
+            }
+            if (t2 >= 0 && t2 <= 1 && i + t2 > lastProgress) {
+                lookahead.set(points, i, t2);
+                return true;
+            }
+        }
+        return false;
+    }
+}
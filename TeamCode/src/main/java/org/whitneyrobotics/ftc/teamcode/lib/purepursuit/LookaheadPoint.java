@@ -0,0 +1,56 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+/**
+ * Reusable result of a {@link LookaheadFinder} update. Followers keep one and read it every loop
+ * instead of getting a new Position back.
+ */
+public class LookaheadPoint {
+
+    private double x;
+    private double y;
+    private int segmentIndex = 0;
+    private double t = 0;
+
+    /**
+     * Starts at the first point of the path, which is where the followers have always started.
+     */
+    public LookaheadPoint(PathBuffer points) {
+        set(points, 0, 0);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return index of the path point the lookahead segment starts at
+     */
+    public int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /**
+     * @return how far along the segment the lookahead point is, from 0 to 1
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * @return segment index plus t, which only ever increases while a path is followed
+     */
+    public double getProgress() {
+        return segmentIndex + t;
+    }
+
+    void set(PathBuffer points, int segmentIndex, double t) {
+        this.segmentIndex = segmentIndex;
+        this.t = t;
+        x = points.getX(segmentIndex) + t * (points.getX(segmentIndex + 1) - points.getX(segmentIndex));
+        y = points.getY(segmentIndex) + t * (points.getY(segmentIndex + 1) - points.getY(segmentIndex));
+    }
+}
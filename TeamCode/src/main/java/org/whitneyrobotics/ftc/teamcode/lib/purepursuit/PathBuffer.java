@@ -0,0 +1,210 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+
+/**
+ * Packed, primitive-backed storage for a generated path.
+ * <p>
+ * Every waypoint property lives in its own {@code double[]} column, so followers walk the path
+ * by index instead of chasing boxed {@link org.whitneyrobotics.ftc.teamcode.lib.geometry.Position}
+ * objects, and the path never has to be shifted or rebuilt while it is being followed.
+ *
+ * @see PathGenerator
+ */
+public class PathBuffer {
+
+    private final int size;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] heading;              // degrees, field frame; the commanded robot heading on strafe paths
+    private final double[] tangent;              // direction of travel along the path, degrees, field frame
+    private final double[] tangentialVelocity;   // mm/s
+    private final double[] angularVelocity;      // deg/s
+    private final double[] distance;             // cumulative arc length from index 0, mm
+    private final double[] curvature;            // 1/mm, positive when the path turns left
+    private final double[] time;                 // seconds from the start of the path at the planned velocities
+
+    public PathBuffer(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("a path needs at least two points");
+        }
+        this.size = size;
+        x = new double[size];
+        y = new double[size];
+        heading = new double[size];
+        tangent = new double[size];
+        tangentialVelocity = new double[size];
+        angularVelocity = new double[size];
+        distance = new double[size];
+        curvature = new double[size];
+        time = new double[size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getHeading(int index) {
+        return heading[index];
+    }
+
+    public double getTangent(int index) {
+        return tangent[index];
+    }
+
+    public double getTangentialVelocity(int index) {
+        return tangentialVelocity[index];
+    }
+
+    public double getAngularVelocity(int index) {
+        return angularVelocity[index];
+    }
+
+    public double getDistance(int index) {
+        return distance[index];
+    }
+
+    public double getCurvature(int index) {
+        return curvature[index];
+    }
+
+    public double getTime(int index) {
+        return time[index];
+    }
+
+    public double getLength() {
+        return distance[size - 1];
+    }
+
+    public double getDuration() {
+        return time[size - 1];
+    }
+
+    /**
+     * Binary search for the segment being driven at {@code t} seconds into the path.
+     *
+     * @return the index i with time[i] <= t < time[i + 1], clamped to the first and last segment
+     */
+    public int indexAtTime(double t) {
+        int low = 0;
+        int high = size - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (time[mid] <= t) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Planned tangential velocity {@code t} seconds into the path. Each segment is driven at a
+     * constant acceleration, so this is exact rather than an interpolation between points.
+     */
+    public double getTangentialVelocityAtTime(double t) {
+        if (t <= 0) {
+            return tangentialVelocity[0];
+        }
+        if (t >= time[size - 1]) {
+            return tangentialVelocity[size - 1];
+        }
+        int i = indexAtTime(t);
+        return tangentialVelocity[i] + getTangentialAccelerationAtTime(t) * (t - time[i]);
+    }
+
+    /**
+     * Planned tangential acceleration {@code t} seconds into the path, 0 before the start and after the end.
+     */
+    public double getTangentialAccelerationAtTime(double t) {
+        if (t < 0 || t >= time[size - 1]) {
+            return 0;
+        }
+        int i = indexAtTime(t);
+        double segmentTime = time[i + 1] - time[i];
+        return segmentTime == 0 ? 0 : (tangentialVelocity[i + 1] - tangentialVelocity[i]) / segmentTime;
+    }
+
+    /**
+     * Planned heading {@code t} seconds into the path. Headings change linearly with arc length
+     * between points, and the turn between two points is the shorter way round.
+     */
+    public double getHeadingAtTime(double t) {
+        if (t <= 0) {
+            return heading[0];
+        }
+        if (t >= time[size - 1]) {
+            return heading[size - 1];
+        }
+        int i = indexAtTime(t);
+        return Functions.normalizeAngle(heading[i] + Functions.normalizeAngle(heading[i + 1] - heading[i]) * fractionOfSegmentAtTime(i, t));
+    }
+
+    /**
+     * Planned angular velocity {@code t} seconds into the path, interpolated along arc length like the heading.
+     */
+    public double getAngularVelocityAtTime(double t) {
+        if (t <= 0) {
+            return angularVelocity[0];
+        }
+        if (t >= time[size - 1]) {
+            return angularVelocity[size - 1];
+        }
+        int i = indexAtTime(t);
+        return angularVelocity[i] + (angularVelocity[i + 1] - angularVelocity[i]) * fractionOfSegmentAtTime(i, t);
+    }
+
+    // how much of segment i's arc length has been covered t seconds into the path
+    private double fractionOfSegmentAtTime(int i, double t) {
+        double segmentLength = distance[i + 1] - distance[i];
+        if (segmentLength == 0) {
+            return 0;
+        }
+        double elapsed = t - time[i];
+        double covered = tangentialVelocity[i] * elapsed + getTangentialAccelerationAtTime(t) * elapsed * elapsed / 2;
+        return Math.min(Math.max(covered / segmentLength, 0), 1);
+    }
+
+    public void setPosition(int index, double x, double y) {
+        this.x[index] = x;
+        this.y[index] = y;
+    }
+
+    public void setHeading(int index, double heading) {
+        this.heading[index] = heading;
+    }
+
+    public void setTangent(int index, double tangent) {
+        this.tangent[index] = tangent;
+    }
+
+    public void setTangentialVelocity(int index, double tangentialVelocity) {
+        this.tangentialVelocity[index] = tangentialVelocity;
+    }
+
+    public void setAngularVelocity(int index, double angularVelocity) {
+        this.angularVelocity[index] = angularVelocity;
+    }
+
+    public void setDistance(int index, double distance) {
+        this.distance[index] = distance;
+    }
+
+    public void setCurvature(int index, double curvature) {
+        this.curvature[index] = curvature;
+    }
+
+    public void setTime(int index, double time) {
+        this.time[index] = time;
+    }
+}
@@ -0,0 +1,246 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePath;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePathGenerationConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePathGenerationConstants;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * Stores generated paths as compact binary files so init does not have to regenerate them.
+ * <p>
+ * Each file is named after a hash of everything the generator reads: the waypoints and which of
+ * them are stops, the generation constants, the follower constants,
+ * {@link PurePursuitRobotConstants#MAX_ACCELERATION} and {@link PathGenerator#VERSION}. Changing any of them simply misses the cache, regenerates
+ * and writes a new file. The class only needs a directory, so paths can be pregenerated on a
+ * laptop and copied into the robot's settings folder.
+ */
+public class PathCache {
+
+    private static final int MAGIC = 0x57485350; // "WHSP"
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final int COLUMNS = 9;
+
+    private static final int SWERVE = 0;
+    private static final int STRAFE = 1;
+
+    private final File directory;
+
+    public PathCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Cache that lives next to the other files we keep in the robot's settings folder.
+     */
+    public static PathCache onRobot() {
+        return new PathCache(AppUtil.getInstance().getSettingsFile("pathCache"));
+    }
+
+    public SwervePath getSwervePath(ArrayList<Position> targetPositions, FollowerConstants followerConstants, SwervePathGenerationConstants constants) {
+        return getSwervePath(PathChain.through(targetPositions), followerConstants, constants);
+    }
+
+    public SwervePath getSwervePath(PathChain chain, FollowerConstants followerConstants, SwervePathGenerationConstants constants) {
+        long key = hashSwerve(chain, followerConstants, constants);
+        PathWaypoints waypoints = PathGenerator.locateWaypoints(chain, constants.getSpacing());
+        PathBuffer points = read(key, SWERVE, waypoints);
+        if (points != null) {
+            return new SwervePath(points, followerConstants, waypoints);
+        }
+        SwervePath path = PathGenerator.generateSwervePath(chain, followerConstants, constants);
+        write(key, SWERVE, path.getPoints());
+        return path;
+    }
+
+    public StrafePath getStrafePath(ArrayList<Position> targetPositions, FollowerConstants followerConstants, StrafePathGenerationConstants constants) {
+        return getStrafePath(PathChain.through(targetPositions), followerConstants, constants);
+    }
+
+    public StrafePath getStrafePath(PathChain chain, FollowerConstants followerConstants, StrafePathGenerationConstants constants) {
+        long key = hashStrafe(chain, followerConstants, constants);
+        PathWaypoints waypoints = PathGenerator.locateWaypoints(chain, constants.getSpacing());
+        PathBuffer points = read(key, STRAFE, waypoints);
+        if (points != null) {
+            return new StrafePath(points, followerConstants, waypoints);
+        }
+        StrafePath path = PathGenerator.generateStrafePath(chain, followerConstants, constants);
+        write(key, STRAFE, path.getPoints());
+        return path;
+    }
+
+    /**
+     * Deletes every cached path in this cache's directory.
+     */
+    public void clear() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith("path_")) {
+                file.delete();
+            }
+        }
+    }
+
+    private File fileFor(long key) {
+        return new File(directory, String.format("path_%016x.bin", key));
+    }
+
+    // returns null on a miss or when the file is unreadable, so the caller regenerates
+    private PathBuffer read(long key, int type, PathWaypoints waypoints) {
+        File file = fileFor(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != key || buffer.getInt() != type) {
+                return null;
+            }
+            int size = buffer.getInt();
+            // the waypoints have to land on the same points as when the file was written
+            if (size != waypoints.getPathIndex(waypoints.size() - 1) + 1 || buffer.remaining() != (long) size * COLUMNS * 8) {
+                return null;
+            }
+
+            PathBuffer points = new PathBuffer(size);
+            for (int i = 0; i < size; i++) {
+                points.setPosition(i, buffer.getDouble(), buffer.getDouble());
+                points.setHeading(i, buffer.getDouble());
+                points.setTangent(i, buffer.getDouble());
+                points.setTangentialVelocity(i, buffer.getDouble());
+                points.setAngularVelocity(i, buffer.getDouble());
+                points.setDistance(i, buffer.getDouble());
+                points.setCurvature(i, buffer.getDouble());
+                points.setTime(i, buffer.getDouble());
+            }
+            return points;
+        } catch (IOException | BufferUnderflowException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    private void write(long key, int type, PathBuffer points) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File file = fileFor(key);
+        File temp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), HEADER_BYTES + points.size() * COLUMNS * 8));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(key);
+            output.writeInt(type);
+            output.writeInt(points.size());
+            for (int i = 0; i < points.size(); i++) {
+                output.writeDouble(points.getX(i));
+                output.writeDouble(points.getY(i));
+                output.writeDouble(points.getHeading(i));
+                output.writeDouble(points.getTangent(i));
+                output.writeDouble(points.getTangentialVelocity(i));
+                output.writeDouble(points.getAngularVelocity(i));
+                output.writeDouble(points.getDistance(i));
+                output.writeDouble(points.getCurvature(i));
+                output.writeDouble(points.getTime(i));
+            }
+            output.close();
+            output = null;
+            // rename so a half written file is never picked up as a cache hit
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            temp.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long hashSwerve(PathChain chain, FollowerConstants followerConstants, SwervePathGenerationConstants constants) {
+        long hash = hashCommon(SWERVE, chain, followerConstants);
+        hash = mix(hash, constants.getSpacing());
+        hash = mix(hash, constants.getWeightSmooth());
+        hash = mix(hash, constants.getTurnSpeed());
+        return mix(hash, constants.getPathMaxVelocity());
+    }
+
+    private static long hashStrafe(PathChain chain, FollowerConstants followerConstants, StrafePathGenerationConstants constants) {
+        long hash = hashSwerve(chain, followerConstants, constants);
+        hash = mix(hash, STRAFE);
+        hash = mix(hash, PurePursuitRobotConstants.MAX_ANGULAR_VELOCITY);
+        hash = mix(hash, constants.getMaxAngularAcceleration());
+        hash = mix(hash, constants.gethKP());
+        hash = mix(hash, constants.gethKI());
+        return mix(hash, constants.gethKD());
+    }
+
+    private static long hashCommon(int type, PathChain chain, FollowerConstants followerConstants) {
+        long hash = 0xcbf29ce484222325L; // FNV-1a offset basis
+        hash = mix(hash, PathGenerator.VERSION);
+        hash = mix(hash, type);
+        hash = mix(hash, PurePursuitRobotConstants.MAX_ACCELERATION);
+        hash = mix(hash, followerConstants.getLookaheadDistance());
+        hash = mix(hash, followerConstants.backwards() ? 1 : 0);
+        hash = mix(hash, chain.size());
+        for (int i = 0; i < chain.size(); i++) {
+            Position position = chain.getPosition(i);
+            // stops change both the shape and the velocities, names change nothing
+            hash = mix(hash, chain.getType(i) == PathChain.WaypointType.STOP ? 1 : 0);
+            hash = mix(hash, position.getX());
+            hash = mix(hash, position.getY());
+            // a heading anchor changes a strafe path, so it has to change the key too
+            if (position instanceof Coordinate) {
+                hash = mix(hash, ((Coordinate) position).getHeading());
+            } else {
+                hash = mix(hash, Double.NaN);
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, double value) {
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            hash ^= (bits >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L; // FNV-1a prime
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,106 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+
+import java.util.ArrayList;
+
+/**
+ * Named waypoints for one continuous path.
+ * <p>
+ * The robot keeps moving through {@link WaypointType#PASS_THROUGH} and {@link WaypointType#ACTION}
+ * waypoints; an action waypoint is just a name the OpMode can check for with the follower's
+ * hasPassed(). At a {@link WaypointType#STOP} waypoint the path is planned down to zero velocity,
+ * the path shape is pinned to the waypoint, and the follower holds there until it is resumed.
+ * The start and the last waypoint are always stops.
+ * <pre>
+ *     new PathChain(start)
+ *             .passThrough("approach", carouselApproach)
+ *             .stop("carousel", carouselPosition)
+ * </pre>
+ */
+public class PathChain {
+
+    public enum WaypointType {
+        PASS_THROUGH, ACTION, STOP
+    }
+
+    public static final String START = "start";
+
+    private final ArrayList<Position> positions = new ArrayList<Position>();
+    private final ArrayList<String> names = new ArrayList<String>();
+    private final ArrayList<WaypointType> types = new ArrayList<WaypointType>();
+
+    public PathChain(Position start) {
+        add(START, start, WaypointType.STOP);
+    }
+
+    /**
+     * Chain that passes through every target position, named by index. This is what the
+     * plain ArrayList versions of the PathGenerator and PathCache methods use.
+     */
+    public static PathChain through(ArrayList<Position> targetPositions) {
+        if (targetPositions.size() < 2) {
+            throw new IllegalArgumentException("a path needs at least two target positions");
+        }
+        PathChain chain = new PathChain(targetPositions.get(0));
+        for (int i = 1; i < targetPositions.size(); i++) {
+            chain.passThrough(String.valueOf(i), targetPositions.get(i));
+        }
+        return chain;
+    }
+
+    public PathChain passThrough(String name, Position position) {
+        return add(name, position, WaypointType.PASS_THROUGH);
+    }
+
+    public PathChain action(String name, Position position) {
+        return add(name, position, WaypointType.ACTION);
+    }
+
+    public PathChain stop(String name, Position position) {
+        return add(name, position, WaypointType.STOP);
+    }
+
+    private PathChain add(String name, Position position, WaypointType type) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("waypoint " + name + " is already in this chain");
+        }
+        positions.add(position);
+        names.add(name);
+        types.add(type);
+        return this;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    public Position getPosition(int waypoint) {
+        return positions.get(waypoint);
+    }
+
+    public String getName(int waypoint) {
+        return names.get(waypoint);
+    }
+
+    public WaypointType getType(int waypoint) {
+        if (waypoint == positions.size() - 1) {
+            return WaypointType.STOP;
+        }
+        return types.get(waypoint);
+    }
+
+    /**
+     * @return the waypoint's position in this chain, or -1 if there is no waypoint with that name
+     */
+    public int indexOf(String name) {
+        return names.indexOf(name);
+    }
+
+    /**
+     * @return a copy of the waypoint positions in order
+     */
+    public ArrayList<Position> getTargetPositions() {
+        return new ArrayList<Position>(positions);
+    }
+}
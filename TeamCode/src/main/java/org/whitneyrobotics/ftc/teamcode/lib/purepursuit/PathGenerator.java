@@ -2,8 +2,6 @@ package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
 
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.StrafeWaypoint;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.SwerveWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePath;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePathGenerationConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
@@ -14,67 +12,123 @@ import java.util.ArrayList;
 
 public class PathGenerator {
 
+    /**
+     * Bump whenever a change here alters the generated points, so {@link PathCache} stops
+     * serving paths built by the old generator.
+     */
+    public static final int VERSION = 5;
+
     public static SwervePath generateSwervePath(ArrayList<Position> targetPositions, FollowerConstants lookaheadDistance, SwervePathGenerationConstants constants) {
-        ArrayList<Position> positionList = generatePosPath(targetPositions, constants.getSpacing(), constants.getWeightSmooth());
-        double[] targetTangentialVelocities = calculateTargetTangentialVelocities(constants.getTurnSpeed(), constants.getPathMaxVelocity(), PurePursuitRobotConstants.MAX_ACCELERATION, positionList);
-        ArrayList<SwerveWaypoint> waypoints = new ArrayList<SwerveWaypoint>();
-        for (int i = 0; i < positionList.size(); i++) {
-            waypoints.add(new SwerveWaypoint(positionList.get(i), targetTangentialVelocities[i]));
-        }
-        return new SwervePath(waypoints, lookaheadDistance);
+        return generateSwervePath(PathChain.through(targetPositions), lookaheadDistance, constants);
     }
 
-    public static StrafePath generateStrafePath(ArrayList<Position> targetPositions, FollowerConstants lookaheadDistance, StrafePathGenerationConstants constants) {
-        ArrayList<Position> positionList = generatePosPath(targetPositions, constants.getSpacing(), constants.getWeightSmooth());
-        ArrayList<Coordinate> coordinateList = generateCoordPath(targetPositions, constants.getSpacing(), constants.getWeightSmooth());
-        double[] targetTangentialVelocities = calculateTargetTangentialVelocities(constants.getTurnSpeed(), constants.getPathMaxVelocity(), PurePursuitRobotConstants.MAX_ACCELERATION, positionList);
-        double[] targetAngularVelocties = calculateTargetAngularVelocities(constants.getMaxAngularAcceleration(), coordinateList);
-        ArrayList<StrafeWaypoint> waypoints = new ArrayList<StrafeWaypoint>();
-        for (int i = 0; i < coordinateList.size(); i++) {
-            waypoints.add(new StrafeWaypoint(coordinateList.get(i), targetTangentialVelocities[i], targetAngularVelocties[i]));
-        }
-        return new StrafePath(waypoints, lookaheadDistance);
+    public static SwervePath generateSwervePath(PathChain chain, FollowerConstants lookaheadDistance, SwervePathGenerationConstants constants) {
+        PathBuffer points = generateProfiledPath(chain, constants.getSpacing(), constants.getWeightSmooth());
+        PathWaypoints waypoints = locateWaypoints(chain, constants.getSpacing());
+        limitTangentialVelocities(constants.getTurnSpeed(), constants.getPathMaxVelocity(), points, waypoints);
+        planTangentialVelocities(PurePursuitRobotConstants.MAX_ACCELERATION, points);
+        return new SwervePath(points, lookaheadDistance, waypoints);
     }
 
-    private static ArrayList<Position> generatePosPath(ArrayList<Position> targetPositions, double spacing, double weightSmooth) {
-        return smoothPath(injectPoints(targetPositions, spacing), weightSmooth);
+    public static StrafePath generateStrafePath(ArrayList<Position> targetPositions, FollowerConstants lookaheadDistance, StrafePathGenerationConstants constants) {
+        return generateStrafePath(PathChain.through(targetPositions), lookaheadDistance, constants);
     }
 
-    private static ArrayList<Coordinate> generateCoordPath(ArrayList<Position> targetPositions, double spacing, double weightSmooth) {
-        ArrayList<Position> smoothedPosPath = smoothPath(injectPoints(targetPositions, spacing), weightSmooth);
-        double[] distanceAtPoint = calculateDistanceAtPoint(smoothedPosPath);
+    public static StrafePath generateStrafePath(PathChain chain, FollowerConstants lookaheadDistance, StrafePathGenerationConstants constants) {
+        PathBuffer points = generateProfiledPath(chain, constants.getSpacing(), constants.getWeightSmooth());
+        PathWaypoints waypoints = locateWaypoints(chain, constants.getSpacing());
+        double[] headings = calculateHeadings(points, waypoints);
+        double[] angularVelocityLimits = calculateAngularVelocityLimits(PurePursuitRobotConstants.MAX_ANGULAR_VELOCITY, constants.getMaxAngularAcceleration(), headings, waypoints);
+        limitTangentialVelocities(constants.getTurnSpeed(), constants.getPathMaxVelocity(), points, waypoints);
+        limitTangentialVelocitiesForHeading(points, headings, angularVelocityLimits, constants.getMaxAngularAcceleration());
+        planTangentialVelocities(PurePursuitRobotConstants.MAX_ACCELERATION, points);
+        calculateTargetAngularVelocities(points, headings);
+        return new StrafePath(points, lookaheadDistance, waypoints);
+    }
 
-        int numAnchorHeadings = 0;
-        for (Position pos : smoothedPosPath) {
-            if (pos instanceof Coordinate) {
-                numAnchorHeadings++;
+    /**
+     * Injects and smooths the chain, then fills in everything about the path's shape.
+     * Each stretch between two stops is smoothed on its own, so the path goes exactly through every stop.
+     */
+    private static PathBuffer generateProfiledPath(PathChain chain, double spacing, double weightSmooth) {
+        ArrayList<Position> targetPositions = chain.getTargetPositions();
+        ArrayList<Position> smoothedPath = new ArrayList<Position>();
+        int sectionStart = 0;
+        for (int i = 1; i < chain.size(); i++) {
+            if (chain.getType(i) == PathChain.WaypointType.STOP) {
+                ArrayList<Position> section = generatePosPath(new ArrayList<Position>(targetPositions.subList(sectionStart, i + 1)), spacing, weightSmooth);
+                if (!smoothedPath.isEmpty()) {
+                    // the stop is the last point of the previous section and the first of this one
+                    smoothedPath.remove(smoothedPath.size() - 1);
+                }
+                smoothedPath.addAll(section);
+                sectionStart = i;
             }
         }
-        int[][] anchorHeadings = new int[numAnchorHeadings][2];
-        int index = 0;
-        for (int i = 0; i < smoothedPosPath.size(); i++) {
-            if (smoothedPosPath.get(i) instanceof Coordinate) {
-                anchorHeadings[index][0] = i;
-                anchorHeadings[index][1] = (int) ((Coordinate) smoothedPosPath.get(i)).getHeading();
-                index++;
-            }
+
+        PathBuffer points = new PathBuffer(smoothedPath.size());
+        for (int i = 0; i < smoothedPath.size(); i++) {
+            points.setPosition(i, smoothedPath.get(i).getX(), smoothedPath.get(i).getY());
         }
+        calculateProfile(points);
+        return points;
+    }
 
-        for (int i = 0; i < numAnchorHeadings - 1; i++) {
-            double distanceBetweenAnchors = distanceAtPoint[anchorHeadings[i + 1][0]] - distanceAtPoint[anchorHeadings[i][0]];
-            int headingBetweenAnchors = anchorHeadings[i + 1][1] - anchorHeadings[i][1];
-            for (int j = anchorHeadings[i][0]; j < anchorHeadings[i + 1][0]; j++) {
-                double scaleFactor = (distanceAtPoint[j + 1] - distanceAtPoint[j]) / distanceBetweenAnchors;
-                ((Coordinate) smoothedPosPath.get(j + 1)).setHeading(((Coordinate) smoothedPosPath.get(j)).getHeading() + headingBetweenAnchors * scaleFactor);
-            }
+    /**
+     * Works out which path index each waypoint was injected at. Smoothing moves points but never
+     * adds or removes any, so this only depends on the waypoints and the spacing.
+     */
+    static PathWaypoints locateWaypoints(PathChain chain, double spacing) {
+        int[] pathIndices = new int[chain.size()];
+        for (int i = 1; i < chain.size(); i++) {
+            // injectPoints always adds at least the segment's first point
+            pathIndices[i] = pathIndices[i - 1] + Math.max(1, numSegmentsBetween(chain.getPosition(i - 1), chain.getPosition(i), spacing));
         }
+        return new PathWaypoints(chain, pathIndices);
+    }
 
-        ArrayList<Coordinate> smoothedCoordPath = new ArrayList<Coordinate>();
-        for (Position pos : smoothedPosPath) {
-            smoothedCoordPath.add((Coordinate) pos);
+    /**
+     * Fills in cumulative arc length, tangent heading and curvature from the point positions.
+     * This is the only place path geometry is worked out; the followers just read the columns.
+     * <p>
+     * Curvature is 1 / radius of the circle through each point and its two neighbours, signed
+     * positive for left turns. The end points and any point sitting on top of a neighbour get 0.
+     */
+    private static void calculateProfile(PathBuffer points) {
+        int n = points.size();
+
+        points.setDistance(0, 0);
+        for (int i = 1; i < n; i++) {
+            double segmentLength = Math.hypot(points.getX(i) - points.getX(i - 1), points.getY(i) - points.getY(i - 1));
+            points.setDistance(i, points.getDistance(i - 1) + segmentLength);
         }
 
-        return smoothedCoordPath;
+        for (int i = 0; i < n; i++) {
+            // central difference in the middle, one sided at the ends
+            int behind = Math.max(i - 1, 0);
+            int ahead = Math.min(i + 1, n - 1);
+            points.setTangent(i, Math.toDegrees(Math.atan2(points.getY(ahead) - points.getY(behind), points.getX(ahead) - points.getX(behind))));
+        }
+
+        points.setCurvature(0, 0);
+        points.setCurvature(n - 1, 0);
+        for (int i = 1; i < n - 1; i++) {
+            double aX = points.getX(i) - points.getX(i - 1);
+            double aY = points.getY(i) - points.getY(i - 1);
+            double bX = points.getX(i + 1) - points.getX(i);
+            double bY = points.getY(i + 1) - points.getY(i);
+            double cX = points.getX(i + 1) - points.getX(i - 1);
+            double cY = points.getY(i + 1) - points.getY(i - 1);
+
+            // k = 4 * triangle area / product of the side lengths, and the cross product is twice the signed area
+            double cross = aX * bY - aY * bX;
+            double sideProduct = Math.hypot(aX, aY) * Math.hypot(bX, bY) * Math.hypot(cX, cY);
+            points.setCurvature(i, sideProduct == 0 ? 0 : 2 * cross / sideProduct);
+        }
+    }
+
+    private static ArrayList<Position> generatePosPath(ArrayList<Position> targetPositions, double spacing, double weightSmooth) {
+        return PathSmoother.smooth(injectPoints(targetPositions, spacing), weightSmooth);
     }
 
     private static ArrayList<Position> injectPoints(ArrayList<Position> orig, double spacing) {
@@ -82,8 +136,7 @@ public class PathGenerator {
 
         for (int i = 0; i < orig.size() - 1; i++) {
             Position segment = Functions.Positions.subtract(orig.get(i + 1), orig.get(i));
-            double magnitude = segment.getMagnitude();
-            int numSegmentsBetween = (int) Math.round(magnitude / spacing);
+            int numSegmentsBetween = numSegmentsBetween(orig.get(i), orig.get(i + 1), spacing);
             segment.scale((double) 1 / numSegmentsBetween);
 
             morePoints.add(orig.get(i));
@@ -96,109 +149,182 @@ public class PathGenerator {
         return morePoints;
     }
 
-    private static ArrayList<Position> smoothPath(ArrayList<Position> orig, double weightSmooth) {
-        ArrayList<Position> smoothed = new ArrayList<Position>();
-        for (Position pos : orig) {
-            smoothed.add(pos);
-        }
-
-        double weightData = 1 - weightSmooth;
-        double tolerance = 0.001;
-
-        double change = tolerance;
-        while (change >= tolerance) {
-            change = 0.0;
-            for (int i = 1; i < orig.size() - 1; i++) {
-                double aux = smoothed.get(i).getX();
-                smoothed.get(i).addX(weightData * (orig.get(i).getX() - smoothed.get(i).getX()) + weightSmooth * (smoothed.get(i - 1).getX() + smoothed.get(i + 1).getX() - (2.0 * smoothed.get(i).getX())));
-                change += Math.abs(aux - smoothed.get(i).getX());
+    private static int numSegmentsBetween(Position start, Position end, double spacing) {
+        return (int) Math.round(Math.hypot(end.getX() - start.getX(), end.getY() - start.getY()) / spacing);
+    }
 
-                aux = smoothed.get(i).getY();
-                smoothed.get(i).addY(weightData * (orig.get(i).getY() - smoothed.get(i).getY()) + weightSmooth * (smoothed.get(i - 1).getY() + smoothed.get(i + 1).getY() - (2.0 * smoothed.get(i).getY())));
-                change += Math.abs(aux - smoothed.get(i).getY());
+    /**
+     * Caps the tangential velocity at every point by pathMaxVelocity and by turnSpeed / curvature,
+     * and every stop at zero. {@link #planTangentialVelocities} then makes the caps drivable.
+     */
+    private static void limitTangentialVelocities(double turnSpeed, double pathMaxVelocity, PathBuffer points, PathWaypoints waypoints) {
+        int n = points.size();
+        for (int i = 0; i < n; i++) {
+            points.setTangentialVelocity(i, Math.min(pathMaxVelocity, turnSpeed / Math.abs(points.getCurvature(i))));
+        }
+        for (int i = 0; i < waypoints.size(); i++) {
+            if (waypoints.getChain().getType(i) == PathChain.WaypointType.STOP) {
+                points.setTangentialVelocity(waypoints.getPathIndex(i), 0);
             }
         }
-        return smoothed;
     }
 
-    private static double[] calculateDistanceAtPoint(ArrayList<Position> smoothedPath) {
-        //creates array to store the total distance that the robot should have traveled at that point
-        double[] distanceArray = new double[smoothedPath.size()];
-        distanceArray[0] = 0;
-
-        for (int i = 1; i < smoothedPath.size(); i++) {
-            distanceArray[i] = distanceArray[i - 1] + Math.hypot(Math.abs(smoothedPath.get(i).getX() - smoothedPath.get(i - 1).getX()), Math.abs(smoothedPath.get(i - 1).getY() - smoothedPath.get(i).getY()));
+    /**
+     * Plans the tangential velocity at every point from the caps already in the buffer, and the
+     * time each point is reached.
+     * <p>
+     * A forward pass limits how fast the robot can speed up from rest, and a backward pass limits
+     * how fast it has to slow down for the next stop. Both use maxAcceleration over the arc length
+     * between points. Time is integrated assuming constant acceleration between points.
+     */
+    private static void planTangentialVelocities(double maxAcceleration, PathBuffer points) {
+        int n = points.size();
+
+        // forward pass, starting from rest
+        points.setTangentialVelocity(0, 0);
+        for (int i = 1; i < n; i++) {
+            double distance = points.getDistance(i) - points.getDistance(i - 1);
+            double previousVelocity = points.getTangentialVelocity(i - 1);
+            double reachableVelocity = Math.sqrt(previousVelocity * previousVelocity + 2 * maxAcceleration * distance);
+            points.setTangentialVelocity(i, Math.min(points.getTangentialVelocity(i), reachableVelocity));
         }
-        return distanceArray;
-    }
 
-    private static double[] calculateTargetCurvatures(ArrayList<Position> smoothedPath) {
-        // creates an array to store all the curvatures
-        double[] curvatureArray = new double[smoothedPath.size()];
-
-        // sets the curvatures at the first and last point to 0
-        curvatureArray[0] = 0;
-        curvatureArray[smoothedPath.size() - 1] = 0;
-
-        // loops through the array to calculate the curvatures
-        for (int i = 1; i < (smoothedPath.size() - 2); i++) {
-
-            // calculates the coordinates of the points directly ahead and behind point i
-            double x1 = smoothedPath.get(i).getX() + 0.0001;
-            double y1 = smoothedPath.get(i).getY();
-
-            double x2 = smoothedPath.get(i - 1).getX();
-            double y2 = smoothedPath.get(i - 1).getY();
-
-            double x3 = smoothedPath.get(i - 1).getX();
-            double y3 = smoothedPath.get(i - 1).getY();
-
-            // calculates the curvatures and returns the array
-            double k1 = 0.5 * (Math.pow(x1, 2) + Math.pow(y1, 2) - Math.pow(x2, 2) - Math.pow(y2, 2)) / (x1 - x2);
-            double k2 = (y1 - y2) / (x1 - x2);
-
-            double b = 0.5 * (Math.pow(x2, 2) - 2 * x2 * k1 + Math.pow(y2, 2) - Math.pow(x3, 2) + 2 * x3 * k1 - Math.pow(y3, 2)) / (x3 * k2 - y3 + y2 - x2 * k2);
-            double a = k1 - k2 * b;
+        // backward pass, ending at rest
+        points.setTangentialVelocity(n - 1, 0);
+        for (int i = n - 2; i >= 0; i--) {
+            double distance = points.getDistance(i + 1) - points.getDistance(i);
+            double nextVelocity = points.getTangentialVelocity(i + 1);
+            double stoppableVelocity = Math.sqrt(nextVelocity * nextVelocity + 2 * maxAcceleration * distance);
+            points.setTangentialVelocity(i, Math.min(points.getTangentialVelocity(i), stoppableVelocity));
+        }
 
-            double r = Math.sqrt(Math.pow(x1 - a, 2) + (Math.pow(y1 - b, 2)));
-            double curvature = 0.0;
-            if (!Double.isNaN(r)) {
-                curvature = 1 / r;
-            }
-            curvatureArray[i] = curvature;
+        points.setTime(0, 0);
+        for (int i = 1; i < n; i++) {
+            double distance = points.getDistance(i) - points.getDistance(i - 1);
+            double averageVelocity = (points.getTangentialVelocity(i - 1) + points.getTangentialVelocity(i)) / 2;
+            points.setTime(i, points.getTime(i - 1) + (averageVelocity == 0 ? 0 : distance / averageVelocity));
         }
-        return curvatureArray;
     }
 
-    private static double[] calculateTargetTangentialVelocities(double turnSpeed, double pathMaxVelocity, double maxAcceleration, ArrayList<Position> smoothedPath) {
-        double[] targetCurvatures = calculateTargetCurvatures(smoothedPath);
-
-        // creates array that holds all of the target velocities
-        double[] targetVelocities = new double[smoothedPath.size()];
+    /**
+     * Works out the commanded heading at every point of a strafe path. Headings come from the
+     * waypoints that are {@link Coordinate}s and are interpolated along arc length between them,
+     * turning whichever way is shorter. Before the first and after the last of them the heading is held.
+     * The heading column is set to the result in -180 to 180.
+     *
+     * @return the same headings without wrap around, so neighbouring points never differ by more than 180
+     */
+    private static double[] calculateHeadings(PathBuffer points, PathWaypoints waypoints) {
+        PathChain chain = waypoints.getChain();
+        int n = points.size();
+        double[] headings = new double[n];
+
+        int lastAnchorIndex = -1;
+        double lastAnchorHeading = 0;
+        for (int w = 0; w < chain.size(); w++) {
+            if (!(chain.getPosition(w) instanceof Coordinate)) {
+                continue;
+            }
+            int anchorIndex = waypoints.getPathIndex(w);
+            double anchorHeading = ((Coordinate) chain.getPosition(w)).getHeading();
+            if (lastAnchorIndex < 0) {
+                anchorHeading = Functions.normalizeAngle(anchorHeading);
+                for (int i = 0; i <= anchorIndex; i++) {
+                    headings[i] = anchorHeading;
+                }
+            } else {
+                // shortest way round, so 170 to -170 turns 20 degrees instead of 340
+                anchorHeading = lastAnchorHeading + Functions.normalizeAngle(anchorHeading - lastAnchorHeading);
+                double startDistance = points.getDistance(lastAnchorIndex);
+                double anchorDistance = points.getDistance(anchorIndex) - startDistance;
+                for (int i = lastAnchorIndex + 1; i <= anchorIndex; i++) {
+                    double fraction = anchorDistance == 0 ? 1 : (points.getDistance(i) - startDistance) / anchorDistance;
+                    headings[i] = lastAnchorHeading + (anchorHeading - lastAnchorHeading) * fraction;
+                }
+            }
+            lastAnchorIndex = anchorIndex;
+            lastAnchorHeading = anchorHeading;
+        }
+        if (lastAnchorIndex < 0) {
+            throw new IllegalArgumentException("a strafe path needs at least one Coordinate waypoint to take its heading from");
+        }
+        for (int i = lastAnchorIndex + 1; i < n; i++) {
+            headings[i] = lastAnchorHeading;
+        }
 
-        // calculates the target velocities for each point
-        targetVelocities[smoothedPath.size() - 1] = 0; // last point target velocity is zero
-        for (int i = smoothedPath.size() - 2; i >= 0; i--) { // works backwards as we need to know last point's velocity to calculate current point's
+        for (int i = 0; i < n; i++) {
+            points.setHeading(i, Functions.normalizeAngle(headings[i]));
+        }
+        return headings;
+    }
 
-            // distance from this current point to next point
-            double distance = Functions.distanceFormula(smoothedPath.get(i).getX(), smoothedPath.get(i).getY(), smoothedPath.get(i + 1).getX(), smoothedPath.get(i + 1).getY());
+    /**
+     * Plans the largest angular velocity allowed at every point, in deg/s.
+     * <p>
+     * The robot is not rotating at the ends of the path, at stops, or wherever the direction of
+     * rotation changes. A forward and a backward pass then limit how fast the rotation can build
+     * up from and wind down to those points, using maxAngularAcceleration over the heading change
+     * between points, the same way the tangential velocity is planned over arc length.
+     */
+    private static double[] calculateAngularVelocityLimits(double maxAngularVelocity, double maxAngularAcceleration, double[] headings, PathWaypoints waypoints) {
+        int n = headings.length;
+        double[] limits = new double[n];
+        for (int i = 1; i < n - 1; i++) {
+            boolean directionChanges = Math.signum(headings[i] - headings[i - 1]) != Math.signum(headings[i + 1] - headings[i]);
+            limits[i] = directionChanges ? 0 : maxAngularVelocity;
+        }
+        for (int i = 0; i < waypoints.size(); i++) {
+            if (waypoints.getChain().getType(i) == PathChain.WaypointType.STOP) {
+                limits[waypoints.getPathIndex(i)] = 0;
+            }
+        }
 
-            // finds the smaller value between the velocity constant / the curvature and a new target velocity
-            double targetVelocity = Math.min(Math.min(pathMaxVelocity, turnSpeed / targetCurvatures[i]), Math.sqrt(Math.pow(targetVelocities[i + 1], 2) + 2 * maxAcceleration * distance));
-            targetVelocities[i] = targetVelocity;
+        for (int i = 1; i < n; i++) {
+            double deltaHeading = Math.abs(headings[i] - headings[i - 1]);
+            limits[i] = Math.min(limits[i], Math.sqrt(limits[i - 1] * limits[i - 1] + 2 * maxAngularAcceleration * deltaHeading));
+        }
+        for (int i = n - 2; i >= 0; i--) {
+            double deltaHeading = Math.abs(headings[i + 1] - headings[i]);
+            limits[i] = Math.min(limits[i], Math.sqrt(limits[i + 1] * limits[i + 1] + 2 * maxAngularAcceleration * deltaHeading));
         }
-        return targetVelocities;
+        return limits;
     }
 
+    /**
+     * Slows the robot down wherever following the heading profile at the planned tangential
+     * velocity would rotate it faster than the angular velocity limits allow.
+     * <p>
+     * The limit is applied per segment using the larger limit of its two ends. Where a limit is 0
+     * (the direction of rotation changes) this keeps the robot moving instead of stopping it on a
+     * point that is not a stop; the limit is then only off by what one segment of turning adds.
+     */
+    private static void limitTangentialVelocitiesForHeading(PathBuffer points, double[] headings, double[] angularVelocityLimits, double maxAngularAcceleration) {
+        for (int i = 0; i < points.size() - 1; i++) {
+            double deltaHeading = Math.abs(headings[i + 1] - headings[i]);
+            double segmentLength = points.getDistance(i + 1) - points.getDistance(i);
+            if (deltaHeading == 0 || segmentLength == 0) {
+                continue;
+            }
+            double limit = Math.max(Math.max(angularVelocityLimits[i], angularVelocityLimits[i + 1]), Math.sqrt(2 * maxAngularAcceleration * deltaHeading));
+            double maxVelocity = limit * segmentLength / deltaHeading;
+            points.setTangentialVelocity(i, Math.min(points.getTangentialVelocity(i), maxVelocity));
+            points.setTangentialVelocity(i + 1, Math.min(points.getTangentialVelocity(i + 1), maxVelocity));
+        }
+    }
 
-    private static double[] calculateTargetAngularVelocities(double maxAngularAcceleration, ArrayList<Coordinate> smoothedPath) {
-        double[] targetAngularVelocities = new double[smoothedPath.size()];
-        targetAngularVelocities[smoothedPath.size() - 1] = 0;
-        for (int i = smoothedPath.size() - 2; i >= 0; i--) {
-            double deltaTheta = smoothedPath.get(i + 1).getHeading() - smoothedPath.get(i).getHeading();
-            targetAngularVelocities[i] = (targetAngularVelocities[i + 1] * targetAngularVelocities[i + 1]) + 2 * maxAngularAcceleration * deltaTheta;
+    /**
+     * Sets the angular velocity at every point to the rate the heading profile changes at the
+     * planned tangential velocity, so it agrees with the heading and time columns.
+     */
+    private static void calculateTargetAngularVelocities(PathBuffer points, double[] headings) {
+        int n = points.size();
+        for (int i = 0; i < n; i++) {
+            int behind = Math.max(i - 1, 0);
+            int ahead = Math.min(i + 1, n - 1);
+            double distance = points.getDistance(ahead) - points.getDistance(behind);
+            double headingPerDistance = distance == 0 ? 0 : (headings[ahead] - headings[behind]) / distance;
+            points.setAngularVelocity(i, headingPerDistance * points.getTangentialVelocity(i));
         }
-        return targetAngularVelocities;
     }
 
 }
@@ -0,0 +1,175 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePath;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePathGenerationConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePathGenerationConstants;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Generates named paths on a worker thread so OpMode init is not blocked.
+ * <p>
+ * Submit every path the route will need as soon as the route is known, then ask for each one by
+ * name when it is about to be driven. Asking for a path that is still being generated blocks
+ * until it is done; asking early is the only time the loop waits. Paths go through
+ * {@link PathCache} when one is given, so a route that has been run before loads from disk.
+ * Call {@link #shutdown()} from the OpMode's stop().
+ */
+public class PathPreparationService {
+
+    private final ExecutorService executor;
+    private final PathCache cache;
+    private final LinkedHashMap<String, Future<?>> paths = new LinkedHashMap<String, Future<?>>();
+
+    public PathPreparationService(PathCache cache) {
+        this.cache = cache;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "PathPreparation");
+                // never keep the robot controller app alive because of a half built path
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Service that generates every path from scratch.
+     */
+    public PathPreparationService() {
+        this(null);
+    }
+
+    public void submitSwervePath(String name, ArrayList<Position> targetPositions, FollowerConstants followerConstants, SwervePathGenerationConstants constants) {
+        // PathChain.through copies the list, so the OpMode can keep editing its own
+        submitSwervePath(name, PathChain.through(targetPositions), followerConstants, constants);
+    }
+
+    /**
+     * Don't add waypoints to the chain after submitting it.
+     */
+    public void submitSwervePath(String name, final PathChain chain, final FollowerConstants followerConstants, final SwervePathGenerationConstants constants) {
+        submit(name, new Callable<SwervePath>() {
+            @Override
+            public SwervePath call() {
+                if (cache != null) {
+                    return cache.getSwervePath(chain, followerConstants, constants);
+                }
+                return PathGenerator.generateSwervePath(chain, followerConstants, constants);
+            }
+        });
+    }
+
+    public void submitStrafePath(String name, ArrayList<Position> targetPositions, FollowerConstants followerConstants, StrafePathGenerationConstants constants) {
+        submitStrafePath(name, PathChain.through(targetPositions), followerConstants, constants);
+    }
+
+    /**
+     * Don't add waypoints to the chain after submitting it.
+     */
+    public void submitStrafePath(String name, final PathChain chain, final FollowerConstants followerConstants, final StrafePathGenerationConstants constants) {
+        submit(name, new Callable<StrafePath>() {
+            @Override
+            public StrafePath call() {
+                if (cache != null) {
+                    return cache.getStrafePath(chain, followerConstants, constants);
+                }
+                return PathGenerator.generateStrafePath(chain, followerConstants, constants);
+            }
+        });
+    }
+
+    private synchronized void submit(String name, Callable<?> task) {
+        if (paths.containsKey(name)) {
+            throw new IllegalArgumentException("a path named " + name + " has already been submitted");
+        }
+        paths.put(name, executor.submit(task));
+    }
+
+    /**
+     * Blocks until the path is ready.
+     */
+    public SwervePath getSwervePath(String name) {
+        return (SwervePath) get(name);
+    }
+
+    /**
+     * Blocks until the path is ready.
+     */
+    public StrafePath getStrafePath(String name) {
+        return (StrafePath) get(name);
+    }
+
+    private Object get(String name) {
+        Future<?> path;
+        synchronized (this) {
+            path = paths.get(name);
+        }
+        if (path == null) {
+            throw new IllegalArgumentException("no path named " + name + " has been submitted");
+        }
+        try {
+            return path.get();
+        } catch (InterruptedException e) {
+            // the OpMode is being stopped; let the loop see the interrupt
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("interrupted while waiting for path " + name, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("could not generate path " + name, e.getCause());
+        } catch (CancellationException e) {
+            throw new RuntimeException("path " + name + " was cancelled by shutdown()", e);
+        }
+    }
+
+    public synchronized boolean isReady(String name) {
+        Future<?> path = paths.get(name);
+        return path != null && path.isDone();
+    }
+
+    public synchronized int getSubmittedCount() {
+        return paths.size();
+    }
+
+    public synchronized int getReadyCount() {
+        int ready = 0;
+        for (Future<?> path : paths.values()) {
+            if (path.isDone()) {
+                ready++;
+            }
+        }
+        return ready;
+    }
+
+    public synchronized boolean allReady() {
+        return getReadyCount() == paths.size();
+    }
+
+    /**
+     * @return e.g. "2/3 paths ready", for telemetry
+     */
+    public String getProgress() {
+        return getReadyCount() + "/" + getSubmittedCount() + " paths ready";
+    }
+
+    /**
+     * Stops generating anything that has not finished. Paths that are already done can still be read.
+     */
+    public synchronized void shutdown() {
+        executor.shutdownNow();
+        // queued paths would otherwise never finish and anyone waiting on them would hang
+        for (Future<?> path : paths.values()) {
+            path.cancel(true);
+        }
+    }
+}
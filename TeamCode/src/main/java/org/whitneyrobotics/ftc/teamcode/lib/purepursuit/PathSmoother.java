@@ -0,0 +1,89 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+
+import java.util.ArrayList;
+
+/**
+ * Data-vs-smoothness path smoother with a fixed O(n) cost.
+ * <p>
+ * The old gradient-descent smoother nudged every interior point by
+ * {@code weightData * (orig - smoothed) + weightSmooth * (prev + next - 2 * smoothed)}
+ * until the total change dropped below a tolerance. The point it converges to is the solution of
+ * <pre>
+ *     -weightSmooth * s[i-1] + (weightData + 2 * weightSmooth) * s[i] - weightSmooth * s[i+1] = weightData * orig[i]
+ * </pre>
+ * with both end points pinned, which is a tridiagonal system. This class solves it directly
+ * with the Thomas algorithm, so the result is the same path without the unbounded loop.
+ */
+public class PathSmoother {
+
+    /**
+     * @param orig         points to smooth, left untouched
+     * @param weightSmooth 0 keeps the original points, 1 pulls the interior onto a straight line
+     * @return new Position objects for the smoothed path
+     */
+    public static ArrayList<Position> smooth(ArrayList<Position> orig, double weightSmooth) {
+        double[] x = new double[orig.size()];
+        double[] y = new double[orig.size()];
+        for (int i = 0; i < orig.size(); i++) {
+            x[i] = orig.get(i).getX();
+            y[i] = orig.get(i).getY();
+        }
+
+        double[] smoothedX = smooth(x, weightSmooth);
+        double[] smoothedY = smooth(y, weightSmooth);
+
+        ArrayList<Position> smoothed = new ArrayList<Position>(orig.size());
+        for (int i = 0; i < orig.size(); i++) {
+            smoothed.add(new Position(smoothedX[i], smoothedY[i]));
+        }
+        return smoothed;
+    }
+
+    /**
+     * Smooths a single coordinate column. The first and last values are kept as is.
+     *
+     * @return a new array, {@code orig} is not modified
+     */
+    public static double[] smooth(double[] orig, double weightSmooth) {
+        if (weightSmooth < 0 || weightSmooth > 1) {
+            throw new IllegalArgumentException("weightSmooth must be between 0 and 1");
+        }
+        int n = orig.length;
+        double[] smoothed = new double[n];
+        System.arraycopy(orig, 0, smoothed, 0, n);
+        if (n < 3 || weightSmooth == 0) {
+            return smoothed;
+        }
+
+        double weightData = 1 - weightSmooth;
+        double offDiagonal = -weightSmooth;
+        double diagonal = weightData + 2 * weightSmooth;
+
+        // forward sweep over the interior points; the pinned end points move to the right hand side
+        double[] modifiedUpper = new double[n];
+        double[] modifiedRhs = new double[n];
+        for (int i = 1; i < n - 1; i++) {
+            double rhs = weightData * orig[i];
+            if (i == 1) {
+                rhs -= offDiagonal * orig[0];
+            }
+            if (i == n - 2) {
+                rhs -= offDiagonal * orig[n - 1];
+            }
+            double upper = (i == n - 2) ? 0 : offDiagonal;
+
+            double denominator = diagonal - offDiagonal * modifiedUpper[i - 1];
+            modifiedUpper[i] = upper / denominator;
+            modifiedRhs[i] = (rhs - offDiagonal * modifiedRhs[i - 1]) / denominator;
+        }
+
+        // back substitution
+        smoothed[n - 2] = modifiedRhs[n - 2];
+        for (int i = n - 3; i >= 1; i--) {
+            smoothed[i] = modifiedRhs[i] - modifiedUpper[i] * smoothed[i + 1];
+        }
+        return smoothed;
+    }
+}
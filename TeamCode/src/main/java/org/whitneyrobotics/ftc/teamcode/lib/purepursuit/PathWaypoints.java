@@ -0,0 +1,77 @@
+package org.whitneyrobotics.ftc.teamcode.lib.purepursuit;
+
+import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+
+/**
+ * Where each waypoint of a {@link PathChain} ended up in the generated path.
+ */
+public class PathWaypoints {
+
+    private final PathChain chain;
+    private final int[] pathIndices;
+
+    PathWaypoints(PathChain chain, int[] pathIndices) {
+        this.chain = chain;
+        this.pathIndices = pathIndices;
+    }
+
+    /**
+     * Waypoints for a path that only stops at its two ends.
+     */
+    public static PathWaypoints endsOf(PathBuffer points) {
+        int last = points.size() - 1;
+        PathChain chain = new PathChain(new Position(points.getX(0), points.getY(0)))
+                .stop("end", new Position(points.getX(last), points.getY(last)));
+        return new PathWaypoints(chain, new int[]{0, last});
+    }
+
+    public PathChain getChain() {
+        return chain;
+    }
+
+    public int size() {
+        return pathIndices.length;
+    }
+
+    /**
+     * @return path index of the waypoint, the waypoint being its position in the chain
+     */
+    public int getPathIndex(int waypoint) {
+        return pathIndices[waypoint];
+    }
+
+    /**
+     * @return path index of the named waypoint
+     */
+    public int getPathIndex(String name) {
+        int waypoint = chain.indexOf(name);
+        if (waypoint < 0) {
+            throw new IllegalArgumentException("no waypoint named " + name);
+        }
+        return pathIndices[waypoint];
+    }
+
+    /**
+     * @return path index of the first stop after {@code pathIndex}, or the last index of the path
+     */
+    public int getNextStopIndex(int pathIndex) {
+        for (int i = 0; i < pathIndices.length; i++) {
+            if (pathIndices[i] > pathIndex && chain.getType(i) == PathChain.WaypointType.STOP) {
+                return pathIndices[i];
+            }
+        }
+        return pathIndices[pathIndices.length - 1];
+    }
+
+    /**
+     * @return name of the stop at {@code pathIndex}, or null if there is no stop there
+     */
+    public String getStopName(int pathIndex) {
+        for (int i = 0; i < pathIndices.length; i++) {
+            if (pathIndices[i] == pathIndex && chain.getType(i) == PathChain.WaypointType.STOP) {
+                return chain.getName(i);
+            }
+        }
+        return null;
+    }
+}
@@ -8,11 +8,20 @@ import org.whitneyrobotics.ftc.teamcode.lib.control.ControlConstants;
 public class PurePursuitRobotConstants {
 
     public final static double MAX_ACCELERATION = 1250;
+    // deg/s, how fast strafe paths are allowed to turn the robot
+    public final static double MAX_ANGULAR_VELOCITY = 180;
 
     public  static double SWERVE_KP = 0.0;
     public  static double SWERVE_KV = 0.00137;
     public  static double SWERVE_KA = 0.0;
 
+    // closest point search: points past the last closest point to check each loop, and how far off the path (mm) before searching the whole path again
+    public static int CLOSEST_POINT_WINDOW = 25;
+    public static double CLOSEST_POINT_RESCAN_DISTANCE = 300;
+
+    // lookahead search stops this many lookahead distances of arc length past the closest point
+    public static double LOOKAHEAD_WINDOW_SCALE = 2;
+
     public final static double STRAFE_KP = 0, STRAFE_KV = 0, STRAFE_KA = 0;
 
     public final static double hKP = 0, hKI = 0, hKD = 0;
@@ -1,38 +1,48 @@
 package org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
 import org.whitneyrobotics.ftc.teamcode.lib.control.ControlConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.control.PIDController;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.StrafeWaypoint;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.SwerveWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.motion.RateLimiter;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.ClosestPointTracker;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadFinder;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadPoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PurePursuitRobotConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 import org.whitneyrobotics.ftc.teamcode.subsys.Drivetrain;
 
-import java.util.ArrayList;
-
 public class StrafeFollower {
 
     StrafePath path;
 
     public int lastClosestPointIndex = 0;
-    public int lastClosestHeadingIndex = 0;
-    private int lastIndex = 0;
-    private double currentTValue = 0;
-
-    public boolean conditionMet = false;
+    public double lastTargetHeading = 0;
 
     private double[] currentTargetWheelVelocities = {0.0, 0.0, 0.0, 0.0};
     private double[] lastTargetWheelVelocities = {0.0, 0.0, 0.0, 0.0};
 
+    private ClosestPointTracker closestPointTracker;
+    private LookaheadFinder lookaheadFinder;
+    private LookaheadPoint lookahead;
+
+    private ControlClock clock;
     private double lastTime;
+    private boolean timeIndexed = false;
+    private double startTime = Double.NaN;
+
+    // the stretch of path between the last stop and the next one
+    private int segmentStartIndex = 0;
+    private int nextStopIndex;
+    private boolean atStop = false;
     private RateLimiter targetVelocityRateLimiter;
 
     private double kP = PurePursuitRobotConstants.STRAFE_KP;
     private double kV = PurePursuitRobotConstants.STRAFE_KV;
     private double kA = PurePursuitRobotConstants.STRAFE_KA;
+    // null runs the feedforward as tuned, at nominal voltage
+    private VoltageService voltage;
 
     private double trackWidth = Drivetrain.getTrackWidth();
     private double wheelBase = Drivetrain.getWheelBase();
@@ -42,126 +52,168 @@ public class StrafeFollower {
 
     private boolean inProgress;
 
-    public StrafeFollower (StrafePath path){
+    public StrafeFollower (StrafePath path, ControlClock clock){
         this.path = path;
-        targetVelocityRateLimiter = new RateLimiter(PurePursuitRobotConstants.MAX_ACCELERATION, 0);
-        lastTime = System.nanoTime()/1E9;
+        this.clock = clock;
+        headingController.setClock(clock);
+        closestPointTracker = new ClosestPointTracker(path.getPoints());
+        lookaheadFinder = new LookaheadFinder(path.getPoints(), path.followerConstants.getLookaheadDistance());
+        lookahead = new LookaheadPoint(path.getPoints());
+        nextStopIndex = path.getWaypoints().getNextStopIndex(0);
+        targetVelocityRateLimiter = new RateLimiter(PurePursuitRobotConstants.MAX_ACCELERATION, 0, clock);
+        lastTime = clock.getTime();
     }
 
-    public double[] calculateMotorPowers(Coordinate currentCoord, double[] currentBackVelocities, double frontRightVelocity, double currentAngularVelocity) {
-        double[] currentWheelVelocities = {currentBackVelocities[1] - (frontRightVelocity - currentBackVelocities[0]), frontRightVelocity, currentBackVelocities[0], currentBackVelocities[1]};
+    public StrafeFollower (StrafePath path){
+        this(path, ControlClock.SYSTEM);
+    }
 
-        boolean tFound = false;
-        for (int i = lastIndex; i < path.size() - 1; i++) {
-            Double nextTValue = calculateT(path.getCoordinateAtIndex(i), path.getCoordinateAtIndex(i + 1), path.followerConstants.getLookaheadDistance(), currentCoord);
+    /**
+     * Scales the feedforward by {@link VoltageService#getCompensation()} so the path is driven at
+     * the same speed on a sagging battery.
+     */
+    public void setVoltageService(VoltageService voltage) {
+        this.voltage = voltage;
+    }
 
-            if (!tFound && !nextTValue.isNaN() && (nextTValue + i) > (currentTValue + lastIndex)) {
-                tFound = true;
-                currentTValue = nextTValue;
-                lastIndex = i;
-            }
+    public double[] calculateMotorPowers(Coordinate currentCoord, double[] currentBackVelocities, double frontRightVelocity) {
+        if (atStop) {
+            lastTime = clock.getTime();
+            return new double[] {0.0, 0.0, 0.0, 0.0};
         }
+        double[] currentWheelVelocities = {currentBackVelocities[1] - (frontRightVelocity - currentBackVelocities[0]), frontRightVelocity, currentBackVelocities[0], currentBackVelocities[1]};
 
-        Position calculatedTStartPoint = path.getCoordinateAtIndex(lastIndex);
-        Position calculatedTEndPoint = path.getCoordinateAtIndex(lastIndex+1);
-        Position lookaheadPoint = Functions.Positions.add(calculatedTStartPoint, Functions.Positions.scale(currentTValue, Functions.Positions.subtract(calculatedTEndPoint, calculatedTStartPoint)));
-
-        int indexOfClosestPoint = calculateIndexOfClosestPoint(path.getWaypoints(), currentCoord);
-        int indexOfClosestHeading = calculateIndexOfClosestHeading(currentCoord);
-
-        Position vectorToLookaheadPoint = Functions.Positions.subtract(lookaheadPoint, currentCoord);
-        vectorToLookaheadPoint = Functions.field2body(vectorToLookaheadPoint, currentCoord);
-        double angleToLookaheadPoint = Math.toDegrees(Math.atan2(vectorToLookaheadPoint.getY(), vectorToLookaheadPoint.getX()));
+        int indexOfClosestPoint = calculateIndexOfClosestPoint(currentCoord);
+        lookaheadFinder.update(currentCoord.getX(), currentCoord.getY(), indexOfClosestPoint, lookahead, nextStopIndex);
+
+        // direction of the lookahead point in the robot frame
+        double dX = lookahead.getX() - currentCoord.getX();
+        double dY = lookahead.getY() - currentCoord.getY();
+        double forward = Functions.cosd(currentCoord.getHeading()) * dX + Functions.sind(currentCoord.getHeading()) * dY;
+        double sideways = -Functions.sind(currentCoord.getHeading()) * dX + Functions.cosd(currentCoord.getHeading()) * dY;
+        double angleToLookaheadPoint = Math.toDegrees(Math.atan2(sideways, forward));
+
+        double currentTime = clock.getTime();
+        double elapsedTime = 0;
+        double targetAngularVelocity;
+        if (timeIndexed) {
+            if (Double.isNaN(startTime)) {
+                startTime = currentTime;
+            }
+            elapsedTime = currentTime - startTime;
+            lastTargetHeading = path.getPoints().getHeadingAtTime(elapsedTime);
+            targetAngularVelocity = path.getPoints().getAngularVelocityAtTime(elapsedTime);
+        } else {
+            lastTargetHeading = path.getHeading(indexOfClosestPoint);
+            targetAngularVelocity = path.getAngularVelocityAtIndex(indexOfClosestPoint);
+        }
 
-        headingController.calculate(path.getAngularVelocityAtIndex(indexOfClosestHeading)- currentAngularVelocity);
+        // the path's angular velocity is the feedforward, this corrects whatever heading error is left
+        headingController.calculate(Functions.normalizeAngle(lastTargetHeading - currentCoord.getHeading()));
         double headingFeedback = headingController.getOutput();
 
-        currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getTangentialVelocityAtIndex(indexOfClosestPoint), angleToLookaheadPoint, path.getAngularVelocityAtIndex(indexOfClosestHeading));
-
-        double deltaTime = System.nanoTime() / 1E9 - lastTime;
-        double[] targetWheelAccelerations = new double[4];
-        for (int i = 0; i < targetWheelAccelerations.length; i++) {
-            targetWheelAccelerations[i] = (currentTargetWheelVelocities[i] - lastTargetWheelVelocities[i]) / deltaTime;
+        double[] targetWheelAccelerations;
+        boolean endReached;
+        if (timeIndexed) {
+            currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getPoints().getTangentialVelocityAtTime(elapsedTime), angleToLookaheadPoint, targetAngularVelocity);
+            targetWheelAccelerations = calculateTargetTranslationalWheelVelocities(path.getPoints().getTangentialAccelerationAtTime(elapsedTime), angleToLookaheadPoint);
+            endReached = elapsedTime >= path.getPoints().getTime(nextStopIndex);
+        } else {
+            // the start and every stop are planned at rest, so aim for the next point to get moving
+            currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getTangentialVelocityAtIndex(Math.max(indexOfClosestPoint, segmentStartIndex + 1)), angleToLookaheadPoint, targetAngularVelocity);
+            double deltaTime = currentTime - lastTime;
+            targetWheelAccelerations = new double[4];
+            // updated twice in one loop leaves nothing to differentiate, so the accelerations stay 0
+            for (int i = 0; i < targetWheelAccelerations.length && deltaTime > 0; i++) {
+                targetWheelAccelerations[i] = (currentTargetWheelVelocities[i] - lastTargetWheelVelocities[i]) / deltaTime;
+            }
+            endReached = indexOfClosestPoint == nextStopIndex;
         }
-        if (indexOfClosestPoint != path.size() - 1) {
+        lastTime = currentTime;
+
+        if (!endReached) {
             double[] feedBack = {currentTargetWheelVelocities[0] - currentWheelVelocities[0], currentTargetWheelVelocities[1] - currentWheelVelocities[1], currentTargetWheelVelocities[2] - currentWheelVelocities[2], currentTargetWheelVelocities[3] - currentWheelVelocities[3]};
             for (int i = 0; i < feedBack.length; i++) {
                 feedBack[i] *= kP;
             }
 
-            double[] feedForwardVel = {kV * currentTargetWheelVelocities[0], kV * currentTargetWheelVelocities[1], kV * currentTargetWheelVelocities[2], kV * currentTargetWheelVelocities[3]};
-            double[] feedForwardAccel = {kA * targetWheelAccelerations[0], kA * targetWheelAccelerations[1], kA * targetWheelAccelerations[2], kA * targetWheelAccelerations[3]};
+            double compensation = voltage == null ? 1 : voltage.getCompensation();
+            double[] feedForwardVel = {compensation * kV * currentTargetWheelVelocities[0], compensation * kV * currentTargetWheelVelocities[1], compensation * kV * currentTargetWheelVelocities[2], compensation * kV * currentTargetWheelVelocities[3]};
+            double[] feedForwardAccel = {compensation * kA * targetWheelAccelerations[0], compensation * kA * targetWheelAccelerations[1], compensation * kA * targetWheelAccelerations[2], compensation * kA * targetWheelAccelerations[3]};
             double[] feedForward = {feedForwardVel[0] + feedForwardAccel[0], feedForwardVel[1] + feedForwardAccel[1], feedForwardVel[2] + feedForwardAccel[2], feedForwardVel[3] + feedForwardAccel[3]};
             double[] motorPowers = {Functions.constrain(feedBack[0] + feedForward[0] - headingFeedback, -1, 1), Functions.constrain(feedBack[1] + feedForward[1] + headingFeedback, -1, 1), Functions.constrain(feedBack[2] + feedForward[2] - headingFeedback, -1, 1), Functions.constrain(feedBack[3] + feedForward[3] + headingFeedback, -1, 1)};
             lastTargetWheelVelocities = currentTargetWheelVelocities;
             inProgress = true;
             return motorPowers;
-        } else {
+        } else if (nextStopIndex == path.size() - 1) {
             inProgress = false;
+        } else {
+            // hold here until the OpMode calls resume(); the path is still in progress
+            atStop = true;
         }
 
         return new double[] {0.0, 0.0, 0.0, 0.0};
     }
 
 
-    private double calculateT(Position lineStart, Position lineEnd, double lookaheadDistance, Coordinate currentCoord) {
-        // constants used throughout the method
-        Position d = Functions.Positions.subtract(lineEnd, lineStart);
-        Position f = Functions.Positions.subtract(lineStart, currentCoord);
-        double r = lookaheadDistance;
+    private int calculateIndexOfClosestPoint(Coordinate currentCoord) {
+        // never past the next stop, even if the path doubles back near it
+        lastClosestPointIndex = Math.min(closestPointTracker.update(currentCoord.getX(), currentCoord.getY()), nextStopIndex);
+        return lastClosestPointIndex;
+    }
 
-        double a = Functions.Positions.dot(d, d);
-        double b = 2 * Functions.Positions.dot(f, d);
-        double c = Functions.Positions.dot(f, f) - r * r;
+    /**
+     * @return true while the robot is holding at a stop in the middle of the path
+     */
+    public boolean isAtStop() {
+        return atStop;
+    }
 
-        double discriminant = b * b - 4 * a * c;
-        if (discriminant < 0) {
-            // no intersection
-        } else {
-            // ray didn't totally miss sphere, so there is a solution to the equation.
-            discriminant = Math.sqrt(discriminant);
-
-            // either solution may be on or off the ray so need to test both
-            // t1 is always the smaller value, because BOTH discriminant and a are nonnegative.
-            double t1 = (-b - discriminant) / (2 * a);
-            double t2 = (-b + discriminant) / (2 * a);
-
-            // 3x HIT cases:
-            //          -o->             --|-->  |            |  --|->
-            // Impale(t1 hit,t2 hit), Poke(t1 hit,t2>1), ExitWound(t1<0, t2 hit),
-
-            // 3x MISS cases:
-            //       ->  o                     o ->              | -> |
-            // FallShort (t1>1,t2>1), Past (t1<0,t2<0), CompletelyInside(t1<0, t2>1)
-
-            if (t1 >= 0 && t1 <= 1) {
-                // t1 is the intersection, and it's closer than t2 (since t1 uses -b - discriminant)
-                // Impale, Poke
-                return t1;
-            }
+    /**
+     * @return name of the stop being held at, or null when not at a stop
+     */
+    public String getStopName() {
+        return atStop ? path.getWaypoints().getStopName(nextStopIndex) : null;
+    }
 
-            if (t2 >= 0 && t2 <= 1) {
-                return t2;
-            }
+    /**
+     * Leaves the current stop and drives on to the next one.
+     */
+    public void resume() {
+        if (!atStop) {
+            return;
+        }
+        segmentStartIndex = nextStopIndex;
+        nextStopIndex = path.getWaypoints().getNextStopIndex(nextStopIndex);
+        atStop = false;
+        if (timeIndexed && !Double.isNaN(startTime)) {
+            // carry on from the stop's planned time, however long we waited there
+            startTime = clock.getTime() - path.getPoints().getTime(segmentStartIndex);
         }
-        return Double.NaN;
     }
 
+    /**
+     * @return true once the closest point is at or past the named waypoint
+     */
+    public boolean hasPassed(String waypoint) {
+        return lastClosestPointIndex >= path.getWaypoints().getPathIndex(waypoint);
+    }
 
-    private int calculateIndexOfClosestPoint(ArrayList<StrafeWaypoint> smoothedPath, Coordinate currentCoord) {
-        // creates array in which we store the current distance to each point in our path
-
-        double[] distances = new double[path.size()];
+    public boolean inProgress() {
+        return inProgress;
+    }
 
-        for (int i = 0
-        /*lastClosestPointIndex*/
-        ; i < path.size(); i++) {
-            distances[i] = Functions.Positions.subtract(path.getCoordinateAtIndex(i), currentCoord).getMagnitude();
-        }
+    /**
+     * In time-indexed mode the target tangential velocity and acceleration come from how long the
+     * path has been followed instead of from the closest point, and the path ends when its planned
+     * duration is up. Set this before the first update.
+     */
+    public void setTimeIndexed(boolean timeIndexed) {
+        this.timeIndexed = timeIndexed;
+    }
 
-        // calculates the index of value in the array with the smallest value and returns that index
-        lastClosestPointIndex = Functions.calculateIndexOfSmallestValue(distances);
-        return lastClosestPointIndex;
+    public boolean isTimeIndexed() {
+        return timeIndexed;
     }
 
     public double[] calculateTargetTranslationalWheelVelocities(double targetVelocity, double angleToLookaheadPoint) {
@@ -190,26 +242,4 @@ public class StrafeFollower {
 
         return new double[]{vFL, vFR, vBL, vBR};
     }
-
-    private int calculateIndexOfClosestHeading(Coordinate currentCoord) {
-        boolean closestHeadingFound = false;
-        double currentHeading = currentCoord.getHeading();
-        double[] headingDiffs = new double[path.size()];
-        for (int i = lastClosestHeadingIndex; i < path.size()-1; i++) {
-            if (!closestHeadingFound && Math.abs(currentHeading - path.getCoordinateAtIndex(i+1).getHeading()) < Math.abs(currentHeading - path.getCoordinateAtIndex(lastClosestHeadingIndex).getHeading())) {
-                if (i < path.size() - 2) {
-                    if (Math.abs(path.getCoordinateAtIndex(i+2).getHeading()- currentHeading) >= Math.abs(path.getCoordinateAtIndex(i+1).getHeading() - currentHeading)) {
-                        conditionMet = true;
-                        lastClosestHeadingIndex = i + 1;
-                        closestHeadingFound = true;
-                    }
-                } else {
-                    closestHeadingFound = true;
-                }
-            }
-            //headingDiffs[i] = Math.abs(currentHeading - smoothedPath[i].getHeading());
-        }
-        //lastClosestHeadingIndex = Functions.calculateIndexOfSmallestValue(headingDiffs);
-        return lastClosestHeadingIndex;
-    }
 }
@@ -1,49 +1,68 @@
 package org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget;
 
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.StrafeWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.FollowerConstants;
-
-import java.util.ArrayList;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathBuffer;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathWaypoints;
 
 public class StrafePath {
 
-    private ArrayList<StrafeWaypoint> waypoints = new ArrayList<>();
+    private PathBuffer points;
 
     FollowerConstants followerConstants;
+    private PathWaypoints waypoints;
 
-    public StrafePath(ArrayList<StrafeWaypoint> waypoints, FollowerConstants lookaheadDistance) {
-        this.waypoints = waypoints;
+    public StrafePath(PathBuffer points, FollowerConstants lookaheadDistance, PathWaypoints waypoints) {
+        this.points = points;
         this.followerConstants = lookaheadDistance;
+        this.waypoints = waypoints;
     }
 
-    public ArrayList<StrafeWaypoint> getWaypoints() {
-        return waypoints;
+    public StrafePath(PathBuffer points, FollowerConstants lookaheadDistance) {
+        this(points, lookaheadDistance, PathWaypoints.endsOf(points));
     }
 
-    public void setWaypoints(ArrayList<StrafeWaypoint> waypoints) {
-        this.waypoints = waypoints;
+    public PathBuffer getPoints() {
+        return points;
+    }
+
+    public PathWaypoints getWaypoints() {
+        return waypoints;
     }
 
     public double getFollowerConstants() {
         return followerConstants.getLookaheadDistance();
     }
 
+    public double getX(int index){
+        return points.getX(index);
+    }
+
+    public double getY(int index){
+        return points.getY(index);
+    }
+
+    public double getHeading(int index){
+        return points.getHeading(index);
+    }
+
+    /**
+     * Allocates a new Coordinate, so keep this out of the follower loop.
+     */
     public Coordinate getCoordinateAtIndex(int index){
-        return waypoints.get(index).getCoordinate();
+        return new Coordinate(points.getX(index), points.getY(index), points.getHeading(index));
     }
 
     public double getTangentialVelocityAtIndex(int index){
-        return waypoints.get(index).getTangentialVelocity();
+        return points.getTangentialVelocity(index);
     }
 
     public double getAngularVelocityAtIndex(int index){
-        return waypoints.get(index).getAngularVelocity();
+        return points.getAngularVelocity(index);
     }
 
     public int size(){
-        return waypoints.size();
+        return points.size();
     }
 
     public boolean backwards(){
@@ -1,9 +1,12 @@
 package org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.SwerveWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.motion.RateLimiter;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.ClosestPointTracker;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadFinder;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadPoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PurePursuitRobotConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 import org.whitneyrobotics.ftc.teamcode.subsys.Drivetrain;
@@ -11,75 +14,111 @@ import org.whitneyrobotics.ftc.teamcode.subsys.Drivetrain;
 public class SwerveFollower {
 
     SwervePath path;
-    SwerveWaypoint firstPoint;
 
     public int lastClosestPointIndex = 0;
-    private int lastIndex = 0;
-    private double currentTValue = 0;
 
     private double[] lastTargetWheelVelocities = {0.0, 0.0};
     private double[] currentTargetWheelVelocities = {0.0,0.0};
 
+    private ClosestPointTracker closestPointTracker;
+    private LookaheadFinder lookaheadFinder;
+    private LookaheadPoint lookahead;
+
+    private ControlClock clock;
     private double lastTime;
+    private boolean timeIndexed = false;
+    private double startTime = Double.NaN;
+
+    // the stretch of path between the last stop and the next one
+    private int segmentStartIndex = 0;
+    private int nextStopIndex;
+    private boolean atStop = false;
     private RateLimiter targetVelocityRateLimiter;
 
     private final double KP = PurePursuitRobotConstants.SWERVE_KP;
     private final double KV = PurePursuitRobotConstants.SWERVE_KV;
     private final double KA = PurePursuitRobotConstants.SWERVE_KA;
+    // null runs the feedforward as tuned, at nominal voltage
+    private VoltageService voltage;
 
     private double trackWidth = Drivetrain.getTrackWidth();
 
     private boolean inProgress = false;
     public double indexOfClosest = 0;
-    public SwerveFollower(SwervePath path) {
+    public SwerveFollower(SwervePath path, ControlClock clock) {
         this.path = path;
-        Position pos = new Position(path.getPositionAtIndex(0).getX(), path.getPositionAtIndex(0).getY());
-        double vel = path.getTargetVelocityAtIndex(0);
-        firstPoint = new SwerveWaypoint(pos, vel);
-        targetVelocityRateLimiter = new RateLimiter(PurePursuitRobotConstants.MAX_ACCELERATION, 0);
-        lastTime = System.nanoTime() / 1E9;
+        this.clock = clock;
+        closestPointTracker = new ClosestPointTracker(path.getPoints());
+        lookaheadFinder = new LookaheadFinder(path.getPoints(), path.getFollowerConstants());
+        lookahead = new LookaheadPoint(path.getPoints());
+        nextStopIndex = path.getWaypoints().getNextStopIndex(0);
+        targetVelocityRateLimiter = new RateLimiter(PurePursuitRobotConstants.MAX_ACCELERATION, 0, clock);
+        lastTime = clock.getTime();
     }
 
-    public double[] calculateMotorPowers(Coordinate currentCoordinate, double[] currentWheelVelocities) {
-        path.getWaypoints().remove(0);
-        path.getWaypoints().add(0, firstPoint);
-        Position lookaheadPoint;
-        Coordinate currentCoord = currentCoordinate;
-        if (path.backwards()) currentCoord = new Coordinate(currentCoordinate.getPos(), Functions.normalizeAngle(currentCoordinate.getHeading() + 180));
+    public SwerveFollower(SwervePath path) {
+        this(path, ControlClock.SYSTEM);
+    }
 
-        boolean tFound = false;
-        for (int i = lastIndex; i < path.size() - 1; i++) {
-            Double nextTValue = new Double(calculateT(path.getPositionAtIndex(i), path.getPositionAtIndex(i + 1), path.getFollowerConstants(), currentCoord));
+    /**
+     * Scales the feedforward by {@link VoltageService#getCompensation()} so the path is driven at
+     * the same speed on a sagging battery.
+     */
+    public void setVoltageService(VoltageService voltage) {
+        this.voltage = voltage;
+    }
 
-            if (!tFound && !nextTValue.isNaN() && (nextTValue + i) > (currentTValue + lastIndex)) {
-                tFound = true;
-                currentTValue = nextTValue;
-                lastIndex = i;
-            }
+    public double[] calculateMotorPowers(Coordinate currentCoordinate, double[] currentWheelVelocities) {
+        if (atStop) {
+            lastTime = clock.getTime();
+            return new double[]{0.0, 0.0};
         }
+        Coordinate currentCoord = currentCoordinate;
+        if (path.backwards()) currentCoord = new Coordinate(currentCoordinate.getPos(), Functions.normalizeAngle(currentCoordinate.getHeading() + 180));
 
-        Position calculatedTStartPoint = path.getPositionAtIndex(lastIndex);
-        Position calculatedTEndPoint = path.getPositionAtIndex(lastIndex + 1);
-        lookaheadPoint = Functions.Positions.add(calculatedTStartPoint, Functions.Positions.scale(currentTValue, Functions.Positions.subtract(calculatedTEndPoint, calculatedTStartPoint)));
         int indexOfClosestPoint = calculateIndexOfClosestPoint(path,currentCoord);
         indexOfClosest = indexOfClosestPoint;
-        double curvature = calculateCurvature(path.getFollowerConstants(), lookaheadPoint, currentCoord);
-        currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getTargetVelocityAtIndex(indexOfClosestPoint), curvature);
+        lookaheadFinder.update(currentCoord.getX(), currentCoord.getY(), indexOfClosestPoint, lookahead, nextStopIndex);
+        double curvature = calculateCurvature(path.getFollowerConstants(), lookahead.getX(), lookahead.getY(), currentCoord);
         if (path.backwards()) {
             currentWheelVelocities = new double[] {-currentWheelVelocities[1], -currentWheelVelocities[0]};
         }
 
-        double deltaTime = System.nanoTime() / 1E9 - lastTime;
-        double[] targetWheelAccelerations = {(currentTargetWheelVelocities[0] - lastTargetWheelVelocities[0]) / deltaTime, (currentTargetWheelVelocities[1] - lastTargetWheelVelocities[1]) / deltaTime};
+        double currentTime = clock.getTime();
+        double[] targetWheelAccelerations;
+        boolean endReached;
+        if (timeIndexed) {
+            if (Double.isNaN(startTime)) {
+                startTime = currentTime;
+            }
+            double elapsedTime = currentTime - startTime;
+            currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getPoints().getTangentialVelocityAtTime(elapsedTime), curvature);
+            // acceleration splits between the wheels the same way velocity does
+            targetWheelAccelerations = calculateTargetWheelVelocities(path.getPoints().getTangentialAccelerationAtTime(elapsedTime), curvature);
+            endReached = elapsedTime >= path.getPoints().getTime(nextStopIndex);
+        } else {
+            // the start and every stop are planned at rest, so aim for the next point to get moving
+            currentTargetWheelVelocities = calculateTargetWheelVelocities(path.getTargetVelocityAtIndex(Math.max(indexOfClosestPoint, segmentStartIndex + 1)), curvature);
+            double deltaTime = currentTime - lastTime;
+            if (deltaTime > 0) {
+                targetWheelAccelerations = new double[] {(currentTargetWheelVelocities[0] - lastTargetWheelVelocities[0]) / deltaTime, (currentTargetWheelVelocities[1] - lastTargetWheelVelocities[1]) / deltaTime};
+            } else {
+                // updated twice in one loop, nothing to differentiate
+                targetWheelAccelerations = new double[] {0.0, 0.0};
+            }
+            endReached = indexOfClosestPoint == nextStopIndex;
+        }
+        lastTime = currentTime;
 
-        if (indexOfClosestPoint != path.size() - 1) {
+        if (!endReached) {
             double[] feedBack = {currentTargetWheelVelocities[0] - currentWheelVelocities[0], currentTargetWheelVelocities[1] - currentWheelVelocities[1]};
             for (int i = 0; i < feedBack.length; i++) {
                 feedBack[i] *= KP;
             }
 
-            double[] feedForwardVel = {KV * currentTargetWheelVelocities[0], KV * currentTargetWheelVelocities[1]};
-            double[] feedForwardAccel = {KA * targetWheelAccelerations[0], KA * targetWheelAccelerations[1]};
+            double compensation = voltage == null ? 1 : voltage.getCompensation();
+            double[] feedForwardVel = {compensation * KV * currentTargetWheelVelocities[0], compensation * KV * currentTargetWheelVelocities[1]};
+            double[] feedForwardAccel = {compensation * KA * targetWheelAccelerations[0], compensation * KA * targetWheelAccelerations[1]};
             double[] feedForward = {feedForwardVel[0] + feedForwardAccel[0], feedForwardVel[1] + feedForwardAccel[1]};
             double[] motorPowers = {Functions.constrain(feedBack[0] + feedForward[0], -1, 1), Functions.constrain(feedBack[1] + feedForward[1], -1, 1)};
             lastTargetWheelVelocities = currentTargetWheelVelocities;
@@ -88,129 +127,30 @@ public class SwerveFollower {
                 return new double[] {-motorPowers[1], -motorPowers[0]};
             }
             return motorPowers;
-        } else {
+        } else if (nextStopIndex == path.size() - 1) {
             inProgress = false;
-        }
-        return new double[]{0.0, 0.0};
-    }
-
-    private double[] calculateTargetCurvatures(Position[] smoothedPath) {
-        // creates an array to store all the curvatures
-        double[] curvatureArray = new double[smoothedPath.length];
-
-        // sets the curvatures at the first and last point to 0
-        curvatureArray[0] = 0;
-        curvatureArray[smoothedPath.length - 1] = 0;
-
-        // loops through the array to calculate the curvatures
-        for (int i = 1; i < (smoothedPath.length - 2); i++) {
-
-            // calculates the coordinates of the points directly ahead and behind point i
-            double x1 = smoothedPath[i].getX() + 0.0001;
-            double y1 = smoothedPath[i].getY();
-
-            double x2 = smoothedPath[i - 1].getX();
-            double y2 = smoothedPath[i - 1].getY();
-
-            double x3 = smoothedPath[i + 1].getX();
-            double y3 = smoothedPath[i + 1].getY();
-
-            // calculates the curvatures and returns the array
-            double k1 = 0.5 * (Math.pow(x1, 2) + Math.pow(y1, 2) - Math.pow(x2, 2) - Math.pow(y2, 2)) / (x1 - x2);
-            double k2 = (y1 - y2) / (x1 - x2);
-
-            double b = 0.5 * (Math.pow(x2, 2) - 2 * x2 * k1 + Math.pow(y2, 2) - Math.pow(x3, 2) + 2 * x3 * k1 - Math.pow(y3, 2)) / (x3 * k2 - y3 + y2 - x2 * k2);
-            double a = k1 - k2 * b;
-
-            double r = Math.sqrt(Math.pow(x1 - a, 2) + (Math.pow(y1 - b, 2)));
-            double curvature = 0.0;
-            if (!Double.isNaN(r)) {
-                curvature = 1 / r;
-            }
-            curvatureArray[i] = curvature;
-        }
-        return curvatureArray;
-    }
-
-    private double calculateT(Position lineStart, Position lineEnd, double lookaheadDistance, Coordinate currentCoord) {
-        // constants used throughout the method
-        Position d = Functions.Positions.subtract(lineEnd, lineStart);
-        Position f = Functions.Positions.subtract(lineStart, currentCoord);
-        double r = lookaheadDistance;
-
-        double a = Functions.Positions.dot(d, d);
-        double b = 2 * Functions.Positions.dot(f, d);
-        double c = Functions.Positions.dot(f, f) - r * r;
-
-        double discriminant = b * b - 4 * a * c;
-        if (discriminant < 0) {
-            // no intersection
         } else {
-            // ray didn't totally miss sphere, so there is a solution to the equation.
-            discriminant = Math.sqrt(discriminant);
-
-            // either solution may be on or off the ray so need to test both
-            // t1 is always the smaller value, because BOTH discriminant and a are nonnegative.
-            double t1 = (-b - discriminant) / (2 * a);
-            double t2 = (-b + discriminant) / (2 * a);
-
-            // 3x HIT cases:
-            //          -o->             --|-->  |            |  --|->
-            // Impale(t1 hit,t2 hit), Poke(t1 hit,t2>1), ExitWound(t1<0, t2 hit),
-
-            // 3x MISS cases:
-            //       ->  o                     o ->              | -> |
-            // FallShort (t1>1,t2>1), Past (t1<0,t2<0), CompletelyInside(t1<0, t2>1)
-
-            if (t1 >= 0 && t1 <= 1) {
-                // t1 is the intersection, and it's closer than t2 (since t1 uses -b - discriminant)
-                // Impale, Poke
-                return t1;
-            }
-
-            if (t2 >= 0 && t2 <= 1) {
-                return t2;
-            }
+            // hold here until the OpMode calls resume(); the path is still in progress
+            atStop = true;
         }
-        return Double.NaN;
+        return new double[]{0.0, 0.0};
     }
 
     private int calculateIndexOfClosestPoint(SwervePath path, Coordinate currentCoord) {
-        // creates array in which we store the current distance to each point in our path
-
-        double[] distances = new double[path.size()];
-        for (int i = 0/*lastClosestPointIndex*/; i < distances.length; i++) {
-            Position pos = new Position(path.getPositionAtIndex(i).getX(), path.getPositionAtIndex(i).getY());
-            distances[i] = Functions.Positions.subtract(pos, currentCoord).getMagnitude();
-        }
-
-        // calculates the index of value in the array with the smallest value and returns that index
-        lastClosestPointIndex = Functions.calculateIndexOfSmallestValue(distances);
+        // never past the next stop, even if the path doubles back near it
+        lastClosestPointIndex = Math.min(closestPointTracker.update(currentCoord.getX(), currentCoord.getY()), nextStopIndex);
         return lastClosestPointIndex;
     }
 
-    private double calculateCurvature(double lookaheadDistance, Position lookaheadPoint, Coordinate currentCoord) {
-        // robot line: ax + by + c = 0
-        double a = -Functions.tand(currentCoord.getHeading());
-        double b = 1;
-        double c = Functions.tand(currentCoord.getHeading()) * currentCoord.getX() - currentCoord.getY();
-
-        Position R = currentCoord.getPos();
-        Position L = lookaheadPoint;
-        // generate point B on robot line (for calculating sign)
-        Position B = new Position(R.getX() + Functions.cosd(currentCoord.getHeading()), R.getY() + Functions.sind(currentCoord.getHeading()));
-
-        Position RB = Functions.Positions.subtract(B, R);
-        Position RL = Functions.Positions.subtract(L, R);
-
-        // calculate which side of the robot line the lookahead point is on
-        double side = Math.signum(Functions.Positions.getCross3dMagnitude(RL, RB));
+    private double calculateCurvature(double lookaheadDistance, double lookaheadX, double lookaheadY, Coordinate currentCoord) {
+        // sideways offset of the lookahead point in the robot frame, positive to the robot's left
+        double dX = lookaheadX - currentCoord.getX();
+        double dY = lookaheadY - currentCoord.getY();
+        double sideways = -Functions.sind(currentCoord.getHeading()) * dX + Functions.cosd(currentCoord.getHeading()) * dY;
 
-        // distance from robot line to lookahead point: d = |ax + by + c| /√(a^2 + b^2)
-        double distance = Math.abs(a * lookaheadPoint.getX() + b * lookaheadPoint.getY() + c) / Math.sqrt(a * a + b * b);
-
-        double curvature = 2 * side * distance / (lookaheadDistance * lookaheadDistance);
-        return curvature;
+        // arc through the robot and the lookahead point, tangent to the robot's heading
+        // negative when the point is on the left, which slows the left wheels in calculateTargetWheelVelocities
+        return -2 * sideways / (lookaheadDistance * lookaheadDistance);
     }
 
     private double[] calculateTargetWheelVelocities(double targetVelocity, double curvature) {
@@ -222,6 +162,56 @@ public class SwerveFollower {
         return new double[]{leftVelocity, rightVelocity};
     }
 
+    /**
+     * In time-indexed mode the target velocity and acceleration come from how long the path has
+     * been followed instead of from the closest point, and the path ends when its planned duration
+     * is up. Steering still uses the lookahead point either way. Set this before the first update.
+     */
+    public void setTimeIndexed(boolean timeIndexed) {
+        this.timeIndexed = timeIndexed;
+    }
+
+    public boolean isTimeIndexed() {
+        return timeIndexed;
+    }
+
+    /**
+     * @return true while the robot is holding at a stop in the middle of the path
+     */
+    public boolean isAtStop() {
+        return atStop;
+    }
+
+    /**
+     * @return name of the stop being held at, or null when not at a stop
+     */
+    public String getStopName() {
+        return atStop ? path.getWaypoints().getStopName(nextStopIndex) : null;
+    }
+
+    /**
+     * Leaves the current stop and drives on to the next one.
+     */
+    public void resume() {
+        if (!atStop) {
+            return;
+        }
+        segmentStartIndex = nextStopIndex;
+        nextStopIndex = path.getWaypoints().getNextStopIndex(nextStopIndex);
+        atStop = false;
+        if (timeIndexed && !Double.isNaN(startTime)) {
+            // carry on from the stop's planned time, however long we waited there
+            startTime = clock.getTime() - path.getPoints().getTime(segmentStartIndex);
+        }
+    }
+
+    /**
+     * @return true once the closest point is at or past the named waypoint
+     */
+    public boolean hasPassed(String waypoint) {
+        return lastClosestPointIndex >= path.getWaypoints().getPathIndex(waypoint);
+    }
+
     public boolean inProgress() {
         return inProgress;
     }
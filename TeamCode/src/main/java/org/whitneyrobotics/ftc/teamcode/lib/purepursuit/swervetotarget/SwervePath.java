@@ -1,42 +1,58 @@
 package org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget;
 
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.SwerveWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.FollowerConstants;
-
-import java.util.ArrayList;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathBuffer;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathWaypoints;
 
 public class SwervePath {
-    private ArrayList<SwerveWaypoint> waypoints = new ArrayList<>();
+    private PathBuffer points;
     private FollowerConstants followerConstants;
+    private PathWaypoints waypoints;
 
-    public SwervePath(ArrayList<SwerveWaypoint> waypoints, FollowerConstants followerConstants){
-        this.waypoints = waypoints;
+    public SwervePath(PathBuffer points, FollowerConstants followerConstants, PathWaypoints waypoints){
+        this.points = points;
         this.followerConstants = followerConstants;
+        this.waypoints = waypoints;
     }
 
-    public ArrayList<SwerveWaypoint> getWaypoints() {
-        return waypoints;
+    public SwervePath(PathBuffer points, FollowerConstants followerConstants){
+        this(points, followerConstants, PathWaypoints.endsOf(points));
     }
 
-    public void setWaypoints(ArrayList<SwerveWaypoint> waypoints) {
-        this.waypoints = waypoints;
+    public PathBuffer getPoints() {
+        return points;
+    }
+
+    public PathWaypoints getWaypoints() {
+        return waypoints;
     }
 
     public double getFollowerConstants() {
         return followerConstants.getLookaheadDistance();
     }
 
+    public double getX(int index){
+        return points.getX(index);
+    }
+
+    public double getY(int index){
+        return points.getY(index);
+    }
+
+    /**
+     * Allocates a new Position, so keep this out of the follower loop.
+     */
     public Position getPositionAtIndex(int index){
-        return waypoints.get(index).getPosition();
+        return new Position(points.getX(index), points.getY(index));
     }
 
     public double getTargetVelocityAtIndex(int index){
-        return waypoints.get(index).getTangentialVelocity();
+        return points.getTangentialVelocity(index);
     }
 
     public int size() {
-        return waypoints.size();
+        return points.size();
     }
 
     public boolean backwards(){
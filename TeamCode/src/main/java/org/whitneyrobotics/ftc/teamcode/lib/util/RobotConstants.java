@@ -3,8 +3,8 @@ package org.whitneyrobotics.ftc.teamcode.lib.util;
 //import com.acmerobotics.dashboard.config.Config;
 
 import com.acmerobotics.dashboard.config.Config;
-import com.qualcomm.robotcore.hardware.VoltageSensor;
 import org.whitneyrobotics.ftc.teamcode.lib.control.ControlConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.control.TunableRegistry;
 @Config
 public class RobotConstants {
     //Drivetrain
@@ -27,14 +27,27 @@ public class RobotConstants {
     public final static ControlConstants ROTATE_CONSTANTS = new ControlConstants(ROTATE_KP,ROTATE_KI,ROTATE_KD);
 
     public final static double DEADBAND_SLIDE_TO_TARGET = 25;
-    public final static double slide_min = 0.2;
-    public final static double slide_max = 0.8;
+    // slide profile limits, encoder ticks per second and per second squared
+    public final static double SLIDE_MAX_VELOCITY = 2000;
+    public final static double SLIDE_MAX_ACCELERATION = 6000;
 
-    public static double SLIDE_KP = 14.5;
-    public static double SLIDE_KI = 0.001;
-    public static double SLIDE_KD = 0.9;
+    // outer loop: ticks of position error to ticks/s of velocity correction
+    public static double SLIDE_KP = 5;
+    public static double SLIDE_KI = 0;
+    public static double SLIDE_KD = 0;
     public final static ControlConstants SLIDE_CONSTANTS = new ControlConstants(SLIDE_KP,SLIDE_KI,SLIDE_KD);
 
+    // inner loop: ticks/s of velocity error to motor power, plus feedforward
+    public static double SLIDE_VELOCITY_KP = 0.0005;
+    public static double SLIDE_VELOCITY_KI = 0;
+    public static double SLIDE_VELOCITY_KD = 0;
+    public static double SLIDE_KV = 0.00036;
+    public static double SLIDE_KA = 0;
+    // power that holds the slides up against gravity; read on every call so dashboard edits apply at once
+    public static double SLIDE_KG = 0.08;
+    public final static ControlConstants.FeedforwardFunction slideKG = (double currentPosition, double currentVelocity) -> SLIDE_KG;
+    public final static ControlConstants SLIDE_VELOCITY_CONSTANTS = new ControlConstants(SLIDE_VELOCITY_KP,SLIDE_VELOCITY_KI,SLIDE_VELOCITY_KD,SLIDE_KV,SLIDE_KA,slideKG);
+
     //Outtake
     public final static double OUTTAKE_MAX_VELOCITY = 2120;
     public final static ControlConstants.FeedforwardFunction flywheelKF = (double currentPosition, double currentVelocity) -> 1/OUTTAKE_MAX_VELOCITY;
@@ -43,8 +56,39 @@ public class RobotConstants {
     public static double FLYWHEEL_KD = 0.86;
     public final static ControlConstants FLYWHEEL_CONSTANTS = new ControlConstants(FLYWHEEL_KP,FLYWHEEL_KI,FLYWHEEL_KD, flywheelKF);
 
+    //Localization noise, read when localization starts
+    // fractions of each step's travel the drive encoders may be off by, along and across it
+    public static double LOCALIZATION_ENCODER_DISTANCE_NOISE = 0.05;
+    public static double LOCALIZATION_ENCODER_LATERAL_NOISE = 0.05;
+    // fraction of each step's encoder turn
+    public static double LOCALIZATION_ENCODER_TURN_NOISE = 0.2;
+    // fraction of each step's IMU turn, and how fast the IMU's drift grows in deg per root second
+    public static double LOCALIZATION_GYRO_TURN_NOISE = 0.02;
+    public static double LOCALIZATION_GYRO_RANDOM_WALK = 0.2;
+
     public final static double rotateTestAngle = 180;
     public final static boolean rotateOrientation = true;
 
+    /**
+     * Lets dashboard edits to the gains above reach the controllers using the *_CONSTANTS objects.
+     */
+    public static void bindTunables(TunableRegistry tunables) {
+        tunables.bindGains(RobotConstants.class, "DRIVE", DRIVE_CONSTANTS);
+        tunables.bindGains(RobotConstants.class, "ROTATE", ROTATE_CONSTANTS);
+        tunables.bindGains(RobotConstants.class, "SLIDE", SLIDE_CONSTANTS);
+        tunables.bindGains(RobotConstants.class, "SLIDE_VELOCITY", SLIDE_VELOCITY_CONSTANTS);
+        tunables.bind(RobotConstants.class, "SLIDE_KV", new TunableRegistry.Target() {
+            @Override
+            public void set(double value) {
+                SLIDE_VELOCITY_CONSTANTS.setkV(value);
+            }
+        });
+        tunables.bind(RobotConstants.class, "SLIDE_KA", new TunableRegistry.Target() {
+            @Override
+            public void set(double value) {
+                SLIDE_VELOCITY_CONSTANTS.setkA(value);
+            }
+        });
+    }
 
 }
@@ -0,0 +1,74 @@
+package org.whitneyrobotics.ftc.teamcode.lib.util;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlConstants;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Gains found on the robot, kept in the settings folder so every OpMode starts from them.
+ * <p>
+ * Entries are named like the {@link RobotConstants} fields they replace (ROTATE_KP and so on).
+ * {@link #load(Class)} copies them into those fields; call it in init before the constants are
+ * bound to a {@code TunableRegistry}, which hands the field values on to the controllers.
+ */
+public class TunedGains {
+
+    public static final String FILE_NAME = "tunedGains.txt";
+
+    public static boolean exists() {
+        return AppUtil.getInstance().getSettingsFile(FILE_NAME).exists();
+    }
+
+    /**
+     * Saves PREFIX_KP, PREFIX_KI and PREFIX_KD, keeping any other gains already in the file.
+     */
+    public static void save(String prefix, ControlConstants gains) {
+        DataTools.Data data = read();
+        data.put(prefix + "_KP", gains.kP);
+        data.put(prefix + "_KI", gains.kI);
+        data.put(prefix + "_KD", gains.kD);
+        DataToolsLite.encode(FILE_NAME, data);
+    }
+
+    /**
+     * Copies every saved gain into the public static double field of owner with the same name.
+     * Entries with no such field or no number are skipped, and a file that can't be read at all,
+     * such as one cut short by an interrupted save, loads nothing, so a stale or broken file can't
+     * stop an OpMode from starting.
+     *
+     * @return how many fields were set
+     */
+    public static int load(Class<?> owner) {
+        DataTools.Data data = read();
+        int loaded = 0;
+        for (Object key : data.keySet()) {
+            try {
+                Field field = owner.getField(key.toString());
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.getType() != double.class) {
+                    continue;
+                }
+                field.setDouble(null, Double.parseDouble(data.get(key).toString()));
+                loaded++;
+            } catch (NoSuchFieldException | IllegalAccessException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return loaded;
+    }
+
+    // empty if there's no file or it can't be parsed; a save then starts it over
+    private static DataTools.Data read() {
+        if (!exists()) {
+            return new DataTools.Data();
+        }
+        try {
+            return DataToolsLite.decodeAsData(FILE_NAME);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return new DataTools.Data();
+        }
+    }
+}
@@ -4,8 +4,12 @@ import com.qualcomm.hardware.bosch.BNO055IMU;
 import com.qualcomm.hardware.bosch.JustLoggingAccelerationIntegrator;
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
 import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 
 /**
@@ -21,6 +25,8 @@ public class IMU {
 
     BNO055IMU imu;
     BNO055IMU.Parameters parameters;
+    // null until startSampling(); the getters read the bus directly until then
+    private volatile ImuSamplingService sampler;
 
     public IMU(HardwareMap theMap) {
         BNO055IMU.Parameters parameters = new BNO055IMU.Parameters();
@@ -38,57 +44,106 @@ public class IMU {
 
 
 
+    /**
+     * Moves every orientation, rate and acceleration read onto an {@link ImuSamplingService}, so
+     * the getters below only read its latest sample instead of waiting on the bus.
+     */
+    public void startSampling(long samplePeriodMs) {
+        if (sampler == null) {
+            sampler = new ImuSamplingService(imu, samplePeriodMs, ControlClock.SYSTEM);
+        }
+    }
+
+    public void startSampling() {
+        startSampling(ImuSamplingService.DEFAULT_SAMPLE_PERIOD_MS);
+    }
+
+    public boolean isSampling() {
+        return sampler != null;
+    }
+
+    public void stopSampling() {
+        if (sampler != null) {
+            sampler.shutdown();
+            sampler = null;
+        }
+    }
+
+    // one orientation read, or none while sampling
     public double[] getThreeHeading()
     {
-        double xheading = imu.getAngularOrientation().toAxesReference(AxesReference.INTRINSIC).toAxesOrder(AxesOrder.XYZ).firstAngle;// - calibration;
-        double yheading = imu.getAngularOrientation().toAxesReference(AxesReference.INTRINSIC).toAxesOrder(AxesOrder.XYZ).secondAngle;// - calibration;
-        double zheading = imu.getAngularOrientation().toAxesReference(AxesReference.INTRINSIC).toAxesOrder(AxesOrder.XYZ).thirdAngle; //- calibration;
-
-        double[] threeHeading = {xheading,yheading,zheading};
+        ImuSamplingService current = sampler;
+        if (current != null) {
+            ImuSamplingService.Sample sample = current.getSample();
+            return new double[]{sample.firstAngle, sample.secondAngle, sample.thirdAngle};
+        }
+        Orientation orientation = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.XYZ, AngleUnit.DEGREES);
+        double[] threeHeading = {orientation.firstAngle, orientation.secondAngle, orientation.thirdAngle};
         return threeHeading; // -180 to 180 deg
     }
 
     public double getHeading(){
-        double heading = imu.getAngularOrientation().toAxesReference(AxesReference.INTRINSIC).toAxesOrder(AxesOrder.XYZ).thirdAngle - calibration;
+        double heading = readZAngle() - calibration;
         heading = Functions.normalizeAngle(heading); // -180 to 180 deg
         return heading;
     }
     public void zeroHeading(){
-        calibration = imu.getAngularOrientation().toAxesReference(AxesReference.INTRINSIC).toAxesOrder(AxesOrder.XYZ).thirdAngle ;
+        calibration = readZAngle();
+    }
+
+    private double readZAngle() {
+        ImuSamplingService current = sampler;
+        if (current != null) {
+            return current.getSample().thirdAngle;
+        }
+        return imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.XYZ, AngleUnit.DEGREES).thirdAngle;
     }
 
     // Returns the magnitude of the acceleration, not the direction.
     public double getAccelerationMag(){
-        double xAccel = imu.getLinearAcceleration().xAccel;
-        double yAccel = imu.getLinearAcceleration().yAccel;
-        double zAccel = imu.getLinearAcceleration().zAccel;
+        double[] acceleration = readLinearAcceleration();
 
         double accelMag =
                 Math.sqrt(
-                        Math.pow( xAccel, 2 ) + Math.pow( yAccel, 2 ) + Math.pow( zAccel, 2 )
+                        Math.pow( acceleration[0], 2 ) + Math.pow( acceleration[1], 2 ) + Math.pow( acceleration[2], 2 )
                 );
         return accelMag;
     }
 
     // Returns the linear acceleration in the z direction
     public double getZAcceleration() {
-        return imu.getLinearAcceleration().zAccel;
+        return readLinearAcceleration()[2];
     }
 
     public double getYAcceleration() {
-        return imu.getLinearAcceleration().yAccel;
+        return readLinearAcceleration()[1];
     }
 
     // Determines if the linear acceleration in the z direction is over the threshold
     public boolean exceedZAccelThreshold() {
-        double zAccel = imu.getLinearAcceleration().zAccel;
+        double zAccel = readLinearAcceleration()[2];
         if (zAccel > Z_ACCEL_THRESHOLD) {
             return true;
         }
         return false;
     }
 
+    // x, y, z in m/s^2; one acceleration read, or none while sampling
+    private double[] readLinearAcceleration() {
+        ImuSamplingService current = sampler;
+        if (current != null) {
+            ImuSamplingService.Sample sample = current.getSample();
+            return new double[]{sample.xAccel, sample.yAccel, sample.zAccel};
+        }
+        Acceleration acceleration = imu.getLinearAcceleration();
+        return new double[]{acceleration.xAccel, acceleration.yAccel, acceleration.zAccel};
+    }
+
     public double getAngularVelocity() {
+        ImuSamplingService current = sampler;
+        if (current != null) {
+            return current.getSample().zRotationRate;
+        }
         return imu.getAngularVelocity().zRotationRate;
     }
 
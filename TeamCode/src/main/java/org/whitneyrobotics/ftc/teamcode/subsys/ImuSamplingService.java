@@ -0,0 +1,121 @@
+package org.whitneyrobotics.ftc.teamcode.subsys;
+
+import com.qualcomm.hardware.bosch.BNO055IMU;
+
+import org.firstinspires.ftc.robotcore.external.navigation.Acceleration;
+import org.firstinspires.ftc.robotcore.external.navigation.AngleUnit;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesOrder;
+import org.firstinspires.ftc.robotcore.external.navigation.AxesReference;
+import org.firstinspires.ftc.robotcore.external.navigation.Orientation;
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the IMU on a background thread and keeps the latest reading, so nothing else has to wait
+ * on the BNO055, the slowest device on the bus.
+ * <p>
+ * Each sample is one orientation read, already in the intrinsic XYZ order the robot uses, one
+ * angular velocity read and one linear acceleration read. {@link #getSample()} only reads a
+ * volatile field. {@link IMU} reads
+ * through this once {@link IMU#startSampling} is called. Call {@link #shutdown()} from the
+ * OpMode's stop(), or {@link IMU#stopSampling()}.
+ */
+public class ImuSamplingService {
+
+    // the BNO055 fuses at 100 Hz; sampling faster just rereads the same data
+    public static final long DEFAULT_SAMPLE_PERIOD_MS = 10;
+
+    /**
+     * One reading. Angles are intrinsic XYZ in degrees, the rate is about z in degrees per
+     * second, linear acceleration is in m/s^2 with gravity removed, and time is seconds on the
+     * service's clock.
+     */
+    public static final class Sample {
+        public final double firstAngle;
+        public final double secondAngle;
+        public final double thirdAngle;
+        public final double zRotationRate;
+        public final double xAccel;
+        public final double yAccel;
+        public final double zAccel;
+        public final double time;
+
+        public Sample(double firstAngle, double secondAngle, double thirdAngle, double zRotationRate,
+                      double xAccel, double yAccel, double zAccel, double time) {
+            this.firstAngle = firstAngle;
+            this.secondAngle = secondAngle;
+            this.thirdAngle = thirdAngle;
+            this.zRotationRate = zRotationRate;
+            this.xAccel = xAccel;
+            this.yAccel = yAccel;
+            this.zAccel = zAccel;
+            this.time = time;
+        }
+    }
+
+    private final BNO055IMU imu;
+    private final ControlClock clock;
+    private final ScheduledExecutorService executor;
+    private volatile Sample sample;
+
+    public ImuSamplingService(BNO055IMU imu, long samplePeriodMs, ControlClock clock) {
+        if (samplePeriodMs <= 0) {
+            throw new IllegalArgumentException("sample period must be positive");
+        }
+        this.imu = imu;
+        this.clock = clock;
+        // read once here so getSample() never returns null
+        sample = read(imu, clock);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ImuSamplingService");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, samplePeriodMs, samplePeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public ImuSamplingService(BNO055IMU imu) {
+        this(imu, DEFAULT_SAMPLE_PERIOD_MS, ControlClock.SYSTEM);
+    }
+
+    /**
+     * Reads the IMU once, in the calling thread.
+     */
+    static Sample read(BNO055IMU imu, ControlClock clock) {
+        Orientation orientation = imu.getAngularOrientation(AxesReference.INTRINSIC, AxesOrder.XYZ, AngleUnit.DEGREES);
+        double rate = imu.getAngularVelocity().zRotationRate;
+        Acceleration acceleration = imu.getLinearAcceleration();
+        return new Sample(orientation.firstAngle, orientation.secondAngle, orientation.thirdAngle, rate,
+                acceleration.xAccel, acceleration.yAccel, acceleration.zAccel, clock.getTime());
+    }
+
+    // only ever runs on the service thread
+    private void sample() {
+        try {
+            sample = read(imu, clock);
+        } catch (RuntimeException e) {
+            // a failed read must not cancel the schedule; keep the last sample
+            e.printStackTrace();
+        }
+    }
+
+    public Sample getSample() {
+        return sample;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -6,7 +6,8 @@ import com.qualcomm.robotcore.hardware.HardwareMap;
 import com.qualcomm.robotcore.hardware.Servo;
 
 import org.firstinspires.ftc.robotcore.external.navigation.CurrentUnit;
-import org.whitneyrobotics.ftc.teamcode.lib.control.PIDController;
+import org.whitneyrobotics.ftc.teamcode.lib.control.ProfiledCascadeController;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
 import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
 import org.whitneyrobotics.ftc.teamcode.lib.util.SimpleTimer;
@@ -63,12 +64,19 @@ public class Outtake {
     }
     private double[] orderedPositions = {MotorLevels.LEVEL1.getPosition(), MotorLevels.LEVEL1_5.getPosition(),MotorLevels.LEVEL2.getPosition(),MotorLevels.LEVEL3.getPosition()};
     public boolean slidingInProgress = false;
-    public PIDController slidesController = new PIDController(RobotConstants.SLIDE_CONSTANTS);
+    public ProfiledCascadeController slidesController = new ProfiledCascadeController(RobotConstants.SLIDE_CONSTANTS, RobotConstants.SLIDE_VELOCITY_CONSTANTS, RobotConstants.SLIDE_MAX_VELOCITY, RobotConstants.SLIDE_MAX_ACCELERATION);
     public boolean slidesFirstLoop = true;
     public boolean dropFirstLoop = true; //for setting drop timer
     public double gateDelay = 1;
     //private boolean outtakeTimerSet = true; <<I don't know what this is used for
 
+    /**
+     * Scales slide power for battery voltage; null leaves it as tuned.
+     */
+    public void setVoltageService(VoltageService voltage) {
+        slidesController.setVoltageService(voltage);
+    }
+
     //toggler based teleop
     public void operate(boolean up, boolean down) {
         if (!slidingInProgress){linearSlidesTog.changeState(up, down);}
@@ -86,26 +94,24 @@ public class Outtake {
 
     public void operateWithoutGamepad(int levelIndex) {
         double currentTarget = orderedPositions[levelIndex];
-        double error = currentTarget-linearSlides.getCurrentPosition();
+        double position = linearSlides.getCurrentPosition();
+        double error = currentTarget-position;
         errorDebug = error;
-        if (slidesFirstLoop){
-            slidingInProgress = true;
-            slidesController.init(error);
+        // a new profile resets the loops' integrals, so only start one when the level changes
+        if (slidesFirstLoop || currentTarget != slidesController.getTarget()){
+            slidesController.setTarget(currentTarget, position);
             slidesFirstLoop = false;
         }
 
-        slidesController.calculate(error);
+        double power = Functions.constrain(slidesController.calculate(position, linearSlides.getVelocity()), -1, 1);
+        slidingInProgress = !slidesController.isProfileFinished();
 
-        double power = (slidesController.getOutput() >= 0 ? 1 : -1) * (Functions.map(Math.abs(slidesController.getOutput()), RobotConstants.DEADBAND_SLIDE_TO_TARGET, 3000, RobotConstants.slide_min, RobotConstants.slide_max));
-
-        if(Math.abs(error) <= RobotConstants.DEADBAND_SLIDE_TO_TARGET ){
+        if(!slidingInProgress && Math.abs(error) <= RobotConstants.DEADBAND_SLIDE_TO_TARGET){
+            // the brake holds the slides once they're there
             linearSlides.setPower(0);
-            slidingInProgress = false;
-            slidesFirstLoop = true;
         }
         else {
             linearSlides.setPower(power);
-            slidingInProgress = true;
         }
     }
 
@@ -164,6 +170,8 @@ public class Outtake {
 
     public double getSlidesPosition(){return linearSlides.getCurrentPosition();}
 
+    public double getSlidesVelocity(){return linearSlides.getVelocity();}
+
     public void toggleTestPositions(){useTestPositions = (useTestPositions) ? false : true;}
 
     public boolean useTestPositions(){return useTestPositions;}
@@ -2,9 +2,17 @@ package org.whitneyrobotics.ftc.teamcode.subsys;
 
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlClock;
+import org.whitneyrobotics.ftc.teamcode.lib.control.LoopClock;
 import org.whitneyrobotics.ftc.teamcode.lib.control.PIDController;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
+import org.whitneyrobotics.ftc.teamcode.lib.localization.DeadWheelLocalizer;
+import org.whitneyrobotics.ftc.teamcode.lib.localization.FusionLocalizer;
+import org.whitneyrobotics.ftc.teamcode.lib.localization.LocalizationService;
+import org.whitneyrobotics.ftc.teamcode.lib.localization.Localizer;
+import org.whitneyrobotics.ftc.teamcode.lib.localization.PoseSnapshot;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.strafetotarget.StrafePath;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwerveFollower;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
@@ -50,8 +58,22 @@ public class WHSRobotImpl {
     public static double ROTATE_MIN = RobotConstants.rotate_min;
     public static double ROTATE_MAX = RobotConstants.rotate_max;
 
+    // controller outputs past these map to full power in driveToTarget and rotateToTarget
+    private static final double DRIVE_FULL_POWER_OUTPUT = 1500;
+    private static final double ROTATE_FULL_POWER_OUTPUT = 180;
+    private static final double DERIVATIVE_FILTER_TIME = 0.05; // s
+
     public PIDController rotateController = new PIDController(RobotConstants.ROTATE_CONSTANTS);
     public PIDController driveController = new PIDController(RobotConstants.DRIVE_CONSTANTS);
+    private ControlClock clock = ControlClock.SYSTEM;
+    private VoltageService voltage;
+    // null until startLocalization(); while running, the estimate methods leave currentCoord to it
+    private LocalizationService localization;
+    private PoseSnapshot lastPose;
+    // set while startLocalization() runs the fusion localizer, which is the one that takes fixes
+    private FusionLocalizer fusion;
+    // true when startLocalization() started the IMU sampler, so stopLocalization() should stop it
+    private boolean startedSampling = false;
 
     public boolean firstRotateLoop = true;
     public boolean firstDriveLoop = true;
@@ -84,13 +106,19 @@ public class WHSRobotImpl {
         ROTATE_MIN = RobotConstants.rotate_min;
         ROTATE_MAX = RobotConstants.rotate_max;
 
+        // stop integrating once the output is already at full power, and smooth encoder/IMU noise out of kD
+        driveController.setOutputLimit(DRIVE_FULL_POWER_OUTPUT);
+        driveController.setDerivativeFilter(DERIVATIVE_FILTER_TIME);
+        rotateController.setOutputLimit(ROTATE_FULL_POWER_OUTPUT);
+        rotateController.setDerivativeFilter(DERIVATIVE_FILTER_TIME);
+
         drivetrain.resetEncoders();
         imu = new IMU(robotMap);
         currentCoord = new Coordinate(0.0, 0.0, 0.0);
     }
 
     public void driveToTarget(Position targetPos, boolean backwards) {
-        Position vectorToTarget = Functions.Positions.subtract(targetPos, currentCoord.getPos()); //field frame
+        Position vectorToTarget = Functions.Positions.subtract(targetPos, getCoordinate().getPos()); //field frame
         vectorToTarget = Functions.field2body(vectorToTarget, currentCoord); //body frame
         vectorToTargetDebug = vectorToTarget;
         double distanceToTarget = vectorToTarget.getX(); /*Functions.calculateMagnitude(vectorToTarget) * (vectorToTarget.getX() >= 0 ? 1 : -1)*/;
@@ -119,10 +147,9 @@ public class WHSRobotImpl {
                     firstDriveLoop = false;
                 }
 
-                driveController.setConstants(RobotConstants.DRIVE_CONSTANTS);
                 driveController.calculate(distanceToTarget);
 
-                double power = Functions.map(Math.abs(driveController.getOutput()), DEADBAND_DRIVE_TO_TARGET, 1500, DRIVE_MIN, DRIVE_MAX);
+                double power = Functions.map(Math.abs(driveController.getOutput()), DEADBAND_DRIVE_TO_TARGET, DRIVE_FULL_POWER_OUTPUT, DRIVE_MIN, DRIVE_MAX);
 
                 // this stuff may be causing the robot to oscillate around the target position
                 if (distanceToTarget < 0) {
@@ -149,7 +176,7 @@ public class WHSRobotImpl {
 
     public void rotateToTarget(double targetHeading, boolean backwards) {
 
-        double angleToTarget = targetHeading - currentCoord.getHeading();
+        double angleToTarget = targetHeading - getCoordinate().getHeading();
         /*if (backwards && angleToTarget > 90) {
             angleToTarget = angleToTarget - 180;
             driveBackwards = true;
@@ -174,10 +201,9 @@ public class WHSRobotImpl {
             firstRotateLoop = false;
         }
 
-        rotateController.setConstants(RobotConstants.ROTATE_CONSTANTS);
         rotateController.calculate(angleToTarget);
 
-        double power = (rotateController.getOutput() >= 0 ? 1 : -1) * (Functions.map(Math.abs(rotateController.getOutput()), 0, 180, ROTATE_MIN, ROTATE_MAX));
+        double power = (rotateController.getOutput() >= 0 ? 1 : -1) * (Functions.map(Math.abs(rotateController.getOutput()), 0, ROTATE_FULL_POWER_OUTPUT, ROTATE_MIN, ROTATE_MAX));
 
         if (Math.abs(angleToTarget) > DEADBAND_ROTATE_TO_TARGET/* && rotateController.getDerivative() < 40*/) {
             drivetrain.operateLeft(power);
@@ -200,12 +226,18 @@ public class WHSRobotImpl {
     }
 
     public void estimateHeading() {
+        if (localization != null) {
+            return;
+        }
         double currentHeading;
         currentHeading = Functions.normalizeAngle(imu.getHeading() + imu.getImuBias()); //-180 to 180 deg
         currentCoord.setHeading(currentHeading); //updates global variable
     }
 
     public void estimateCoordinate() {
+        if (localization != null) {
+            return;
+        }
         double[] currentEncoderValues = drivetrain.getLRAvgEncoderPosition();
         encoderDeltas[0] = currentEncoderValues[0] - encoderValues[0];
         encoderDeltas[1] = currentEncoderValues[1] - encoderValues[1];
@@ -225,10 +257,27 @@ public class WHSRobotImpl {
     }
 
     public Coordinate getCoordinate() {
+        if (localization != null) {
+            PoseSnapshot pose = localization.getPose();
+            if (pose != lastPose) {
+                lastPose = pose;
+                currentCoord = pose.toCoordinate();
+            }
+        }
         return currentCoord;
     }
 
+    /**
+     * @return the latest pose with its velocity, or null if localization isn't running
+     */
+    public PoseSnapshot getPose() {
+        return localization == null ? null : localization.getPose();
+    }
+
     public void estimatePosition() {
+        if (localization != null) {
+            return;
+        }
         encoderDeltas = drivetrain.getLRAvgEncoderDelta();
         distance = drivetrain.encToMM((encoderDeltas[0] + encoderDeltas[1]) / 2);
         robotX += distance * Functions.cosd(getCoordinate().getHeading());
@@ -243,9 +292,79 @@ public class WHSRobotImpl {
         robotY = initCoord.getY();
         imu.setImuBias(currentCoord.getHeading());
         lastKnownHeading = currentCoord.getHeading();
+        if (localization != null) {
+            localization.setPose(initCoord);
+        }
+    }
+
+    /**
+     * Hands position tracking to a {@link LocalizationService} running a {@link FusionLocalizer}
+     * from the current coordinate. From then on getCoordinate() returns the latest pose it published and the
+     * estimate methods do nothing. Call {@link #stopLocalization()} from the OpMode's stop().
+     * Starts IMU sampling if the OpMode hasn't; stopLocalization() only stops a sampler started
+     * here.
+     */
+    public void startLocalization() {
+        if (localization != null) {
+            return;
+        }
+        // the localizer reads heading and rate every update; keep them off the bus
+        if (!imu.isSampling()) {
+            imu.startSampling();
+            startedSampling = true;
+        }
+        FusionLocalizer localizer = new FusionLocalizer(drivetrain, imu);
+        startLocalization(localizer);
+        fusion = localizer;
+    }
+
+    /**
+     * Same as {@link #startLocalization()} with another localizer, such as
+     * {@link DeadWheelLocalizer#onRobot}.
+     */
+    public void startLocalization(Localizer localizer) {
+        if (localization != null) {
+            return;
+        }
+        localization = new LocalizationService(localizer, currentCoord);
+        localization.start();
     }
 
+    public void stopLocalization() {
+        if (localization != null) {
+            localization.shutdown();
+            localization = null;
+        }
+        fusion = null;
+        // a sampler the OpMode started is the OpMode's to stop
+        if (startedSampling) {
+            imu.stopSampling();
+            startedSampling = false;
+        }
+    }
+
+    /**
+     * Hands a position seen from outside, such as a camera, to the fusion localizer. Does
+     * nothing unless {@link #startLocalization()} is running.
+     *
+     * @param stdDev      how far off the fix may be, mm
+     * @param captureTime when the frame was taken, System.nanoTime() in seconds; NaN for now
+     */
+    public void submitPositionFix(Position fix, double stdDev, double captureTime) {
+        if (fusion != null) {
+            fusion.submitFix(fix.getX(), fix.getY(), stdDev, captureTime);
+        }
+    }
+
+    /**
+     * @deprecated reads only two of the three dead wheels; start localization with
+     * {@link DeadWheelLocalizer#onRobot} instead
+     */
+    @Deprecated
     public void deadWheelEstimateCoordinate() {
+        if (localization != null) {
+            return;
+        }
 
         double deltaXRobot, deltaYRobot;
 
@@ -272,8 +391,29 @@ public class WHSRobotImpl {
         currentCoord.setHeading(Functions.normalizeAngle(currentCoord.getHeading() + Math.toDegrees(deltaTheta)));
     }
 
+    /**
+     * Clock for every controller the robot owns, including followers made by later updatePath() calls.
+     * Pass a {@link LoopClock} the OpMode updates at the top of each loop so they all share one time.
+     */
+    public void setControlClock(ControlClock clock) {
+        this.clock = clock;
+        rotateController.setClock(clock);
+        driveController.setClock(clock);
+        outtake.slidesController.setClock(clock);
+    }
+
+    /**
+     * Battery voltage for the path followers and slides to scale their feedforward by, including
+     * followers made by later updatePath() calls. The OpMode owns the service and shuts it down.
+     */
+    public void setVoltageService(VoltageService voltage) {
+        this.voltage = voltage;
+        outtake.setVoltageService(voltage);
+    }
+
     public void updatePath(SwervePath path) {
-        swerveFollower = new SwerveFollower(path);
+        swerveFollower = new SwerveFollower(path, clock);
+        swerveFollower.setVoltageService(voltage);
     }
 
     public void updatePath(StrafePath path) {
@@ -288,6 +428,14 @@ public class WHSRobotImpl {
         return swerveFollower.inProgress();
     }
 
+    public boolean swerveAtStop() {
+        return swerveFollower.isAtStop();
+    }
+
+    public void resumeSwerve() {
+        swerveFollower.resume();
+    }
+
     /*public void operateIntakeOuttake(boolean changeState, boolean intakePower, boolean intakeReverse, boolean outtakeUp, boolean outtakeDown, boolean reset){
 
         if(outtake.getTier() != 0){
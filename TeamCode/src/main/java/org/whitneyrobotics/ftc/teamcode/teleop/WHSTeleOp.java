@@ -3,15 +3,27 @@ package org.whitneyrobotics.ftc.teamcode.teleop;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.LoopClock;
+import org.whitneyrobotics.ftc.teamcode.lib.control.TunableRegistry;
+import org.whitneyrobotics.ftc.teamcode.lib.control.VoltageService;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
+import org.whitneyrobotics.ftc.teamcode.lib.motion.DriveInputShaper;
 import org.whitneyrobotics.ftc.teamcode.lib.util.DataToolsLite;
 import org.whitneyrobotics.ftc.teamcode.lib.util.GamepadListener;
+import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.util.Toggler;
+import org.whitneyrobotics.ftc.teamcode.lib.util.TunedGains;
 import org.whitneyrobotics.ftc.teamcode.subsys.Outtake;
 import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImpl;
 
 @TeleOp(name = "WHS TeleOp", group = "TeleOp")
 public class WHSTeleOp extends OpMode {
     WHSRobotImpl robot;
+    private VoltageService voltage;
+    private TunableRegistry tunables = new TunableRegistry();
+    private LoopClock clock = new LoopClock();
+    private Toggler driverSelector = new Toggler(DriveInputShaper.Driver.values().length);
+    private DriveInputShaper driveShaper;
     private GamepadListener gamepadListener1 = new GamepadListener();
     private int autoDropState = 1;
     private Outtake outtake;
@@ -24,6 +36,13 @@ public class WHSTeleOp extends OpMode {
     public void init() {
         telemetry.setAutoClear(false);
         robot = new WHSRobotImpl(hardwareMap);
+        robot.setControlClock(clock);
+        robot.imu.startSampling();
+        voltage = new VoltageService(hardwareMap);
+        robot.setVoltageService(voltage);
+        TunedGains.load(RobotConstants.class);
+        RobotConstants.bindTunables(tunables);
+        tunables.start();
         Object[] data = DataToolsLite.decode("autoConfig.txt");
         try {
             robot.carousel.setAlliance((int)data[0]);
@@ -34,10 +53,25 @@ public class WHSTeleOp extends OpMode {
         lastRecordedTime=lastRecordedTime = System.nanoTime();
     }
 
+    @Override
+    public void init_loop() {
+        telemetry.setAutoClear(true);
+        driverSelector.changeState(gamepad1.dpad_right, gamepad1.dpad_left);
+        telemetry.addData("Carousel Alliance", robot.carousel.getAlliance());
+        telemetry.addData("Driver (gamepad 1 dpad left/right)", DriveInputShaper.Driver.values()[driverSelector.currentState()]);
+    }
+
+    @Override
+    public void start() {
+        driveShaper = new DriveInputShaper(DriveInputShaper.Driver.values()[driverSelector.currentState()], clock);
+    }
+
     // Driver 1 (Gamepad 1): Drivetrain, Intake
     // Driver 2 (Gamepad 2): Intake Reverse, Carousel, Outtake
     @Override
     public void loop() {
+        clock.update();
+        tunables.update();
         telemetry.setAutoClear(true);
 
         // DRIVER 1 CONTROLS
@@ -47,12 +81,9 @@ public class WHSTeleOp extends OpMode {
             robot.setInitialCoordinate(new Coordinate(0,0,0));
         }
         robot.drivetrain.switchFieldCentric(gamepad1.back);
-        if (gamepad1.left_bumper) {
-            robot.drivetrain.operateMecanumDrive(-gamepad1.left_stick_x / 3, gamepad1.left_stick_y / 3, -gamepad1.right_stick_x / 3, robot.getCoordinate().getHeading());
-        }
-        else {
-            robot.drivetrain.operateMecanumDriveScaled(-gamepad1.left_stick_x, gamepad1.left_stick_y, -gamepad1.right_stick_x, robot.getCoordinate().getHeading());
-        }
+        // left bumper is slow mode; the shaper ramps between speeds instead of stepping
+        driveShaper.update(-gamepad1.left_stick_x, gamepad1.left_stick_y, -gamepad1.right_stick_x, gamepad1.left_bumper ? 1 / 3.0 : 1);
+        robot.drivetrain.operateMecanumDrive(driveShaper.getStrafe(), driveShaper.getForward(), driveShaper.getTurn(), robot.getCoordinate().getHeading());
         // Intake
         robot.intake.operate(gamepad1.right_bumper,gamepad1.right_trigger>0.05 || gamepad2.right_trigger>0.05); //just so player 2 can reverse
 
@@ -112,4 +143,11 @@ public class WHSTeleOp extends OpMode {
         lastRecordedTime = System.nanoTime();
 
     }
+
+    @Override
+    public void stop() {
+        robot.imu.stopSampling();
+        voltage.shutdown();
+        tunables.shutdown();
+    }
 }
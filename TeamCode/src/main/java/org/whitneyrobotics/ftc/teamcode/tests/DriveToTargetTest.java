@@ -6,6 +6,7 @@ import com.acmerobotics.dashboard.telemetry.TelemetryPacket;*/
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.TunableRegistry;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
 import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
@@ -16,6 +17,7 @@ import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImplOld;
 public class DriveToTargetTest extends OpMode {
 
     WHSRobotImplOld robot;
+    private TunableRegistry tunables = new TunableRegistry();
 /*    FtcDashboard dashboard = FtcDashboard.getInstance();
     Telemetry dashboardTelemetry = dashboard.getTelemetry();*/
 
@@ -37,12 +39,14 @@ public class DriveToTargetTest extends OpMode {
 
         robot = new WHSRobotImplOld(hardwareMap);
         robot.setInitialCoordinate(new Coordinate(0, 0, 0));
+        RobotConstants.bindTunables(tunables);
+        tunables.start();
         telemetry.setMsTransmissionInterval(10);
     }
 
     @Override
     public void loop() {
-        robot.driveController.setConstants(RobotConstants.DRIVE_CONSTANTS);
+        tunables.update();
         robot.estimatePosition();
         robot.estimateHeading();
         switch(state){
@@ -106,4 +110,9 @@ public class DriveToTargetTest extends OpMode {
         telemetry.addData("Vector to Target y", robot.vectorToTargetDebug.getY());
 
     }
+
+    @Override
+    public void stop() {
+        tunables.shutdown();
+    }
 }
@@ -0,0 +1,188 @@
+package org.whitneyrobotics.ftc.teamcode.tests;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+import com.qualcomm.robotcore.hardware.VoltageSensor;
+
+import org.firstinspires.ftc.robotcore.internal.system.AppUtil;
+import org.whitneyrobotics.ftc.teamcode.lib.control.CharacterizationLog;
+import org.whitneyrobotics.ftc.teamcode.lib.control.FeedforwardFitter;
+import org.whitneyrobotics.ftc.teamcode.subsys.DrivetrainExperimental;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Measures drivetrain feedforward constants for the path followers.
+ * <p>
+ * Drives four runs, each logged to a file in the settings folder: a slow quasi-static power ramp
+ * forwards and backwards, then a power step forwards and backwards. Each run stops after
+ * {@link #MAX_DISTANCE} so the robot stays near where it started. kS, kV and kA are then fit per
+ * side with {@link FeedforwardFitter} and shown here; the same fit can be rerun on a laptop
+ * against the log file. Put the robot on the floor with about 1.5 m clear in front and behind.
+ */
+@TeleOp(name = "Drivetrain Characterization", group = "tests")
+public class DrivetrainCharacterization extends OpMode {
+
+    private static final double QUASISTATIC_RAMP_RATE = 0.05; // power per second
+    private static final double STEP_POWER = 0.6;
+    private static final double STEP_DURATION = 2;            // s
+    private static final double MAX_DISTANCE = 1200;          // mm per run
+    private static final double REST_TIME = 1;                // s between runs
+
+    private static final int[] RUN_TESTS = {CharacterizationLog.QUASISTATIC, CharacterizationLog.QUASISTATIC, CharacterizationLog.STEP, CharacterizationLog.STEP};
+    private static final int[] RUN_DIRECTIONS = {1, -1, 1, -1};
+
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int RESTING = 2;
+    private static final int DONE = 3;
+
+    private DrivetrainExperimental drivetrain;
+    private VoltageSensor voltageSensor;
+
+    private CharacterizationLog log;
+    private File logFile;
+    private ArrayList<CharacterizationLog.Sample> samples = new ArrayList<CharacterizationLog.Sample>();
+
+    private int state = WAITING;
+    private int run = 0;
+    private double stateStartTime;
+    private double runStartLeft;
+    private double runStartRight;
+
+    private String leftResult = "";
+    private String rightResult = "";
+
+    @Override
+    public void init() {
+        drivetrain = new DrivetrainExperimental(hardwareMap);
+        voltageSensor = hardwareMap.voltageSensor.iterator().next();
+    }
+
+    @Override
+    public void loop() {
+        double now = System.nanoTime() / 1E9;
+        double leftPosition = DrivetrainExperimental.encToMM(drivetrain.getLAvgEncoderPosition());
+        double rightPosition = DrivetrainExperimental.encToMM(drivetrain.getRAvgEncoderPosition());
+
+        switch (state) {
+            case WAITING:
+                telemetry.addLine("Clear about 1.5 m in front of and behind the robot, then press A.");
+                if (gamepad1.a) {
+                    openLog();
+                    startRun(now, leftPosition, rightPosition);
+                }
+                break;
+            case RUNNING:
+                double elapsed = now - stateStartTime;
+                double power;
+                boolean finished;
+                if (RUN_TESTS[run] == CharacterizationLog.QUASISTATIC) {
+                    power = QUASISTATIC_RAMP_RATE * elapsed;
+                    finished = power > 1;
+                } else {
+                    power = STEP_POWER;
+                    finished = elapsed > STEP_DURATION;
+                }
+                double distance = (Math.abs(leftPosition - runStartLeft) + Math.abs(rightPosition - runStartRight)) / 2;
+                if (finished || distance > MAX_DISTANCE || gamepad1.b) {
+                    drivetrain.operate(0, 0);
+                    state = RESTING;
+                    stateStartTime = now;
+                    break;
+                }
+                power *= RUN_DIRECTIONS[run];
+                drivetrain.operate(power, power);
+
+                double[] velocities = drivetrain.getAllWheelVelocities();
+                record(new CharacterizationLog.Sample(run, RUN_TESTS[run], now, voltageSensor.getVoltage(), power, power,
+                        leftPosition, rightPosition, (velocities[0] + velocities[2]) / 2, (velocities[1] + velocities[3]) / 2));
+                telemetry.addData("Run", (run + 1) + "/" + RUN_TESTS.length + (RUN_TESTS[run] == CharacterizationLog.QUASISTATIC ? " quasi-static" : " step"));
+                telemetry.addData("Power", power);
+                telemetry.addLine("Press B to cut the run short.");
+                break;
+            case RESTING:
+                // let the robot come to a stop so the next run starts from rest
+                if (now - stateStartTime > REST_TIME) {
+                    run++;
+                    if (run < RUN_TESTS.length) {
+                        startRun(now, leftPosition, rightPosition);
+                    } else {
+                        finish();
+                    }
+                }
+                break;
+            case DONE:
+                break;
+        }
+
+        telemetry.addData("Samples", samples.size());
+        telemetry.addData("Log", logFile == null ? "none" : logFile.getName());
+        telemetry.addData("Left", leftResult);
+        telemetry.addData("Right", rightResult);
+    }
+
+    @Override
+    public void stop() {
+        drivetrain.operate(0, 0);
+        closeLog();
+    }
+
+    private void startRun(double now, double leftPosition, double rightPosition) {
+        state = RUNNING;
+        stateStartTime = now;
+        runStartLeft = leftPosition;
+        runStartRight = rightPosition;
+    }
+
+    private void openLog() {
+        logFile = AppUtil.getInstance().getSettingsFile("characterization-" + System.currentTimeMillis() + ".bin");
+        try {
+            log = new CharacterizationLog(logFile);
+        } catch (IOException e) {
+            // still worth running; the fit below only needs the samples in memory
+            e.printStackTrace();
+            log = null;
+            logFile = null;
+        }
+    }
+
+    private void record(CharacterizationLog.Sample sample) {
+        samples.add(sample);
+        if (log == null) {
+            return;
+        }
+        try {
+            log.write(sample);
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeLog();
+        }
+    }
+
+    private void closeLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        log = null;
+    }
+
+    private void finish() {
+        state = DONE;
+        closeLog();
+        try {
+            leftResult = FeedforwardFitter.fitLeft(samples).toString();
+            rightResult = FeedforwardFitter.fitRight(samples).toString();
+        } catch (IllegalArgumentException e) {
+            leftResult = e.getMessage();
+            rightResult = e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.whitneyrobotics.ftc.teamcode.tests;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadFinder;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.LookaheadPoint;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathBuffer;
+
+/**
+ * Times the old full-path lookahead loop against LookaheadFinder on the Control Hub.
+ * The robot is stepped along the whole path and the average time per follower loop is reported,
+ * which should stay flat for LookaheadFinder as the path gets longer.
+ */
+@TeleOp(name = "Lookahead Benchmark", group = "tests")
+public class LookaheadBenchmark extends OpMode {
+
+    private static final int[] PATH_LENGTHS = {100, 1000, 10000};
+    private static final double SPACING = 10;
+    private static final double LOOKAHEAD_DISTANCE = 250;
+    private static final int TICKS = 500;
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    private String[] results = new String[PATH_LENGTHS.length];
+
+    @Override
+    public void init() {
+        for (int i = 0; i < PATH_LENGTHS.length; i++) {
+            PathBuffer points = wavyPath(PATH_LENGTHS[i]);
+
+            long oldTime = Long.MAX_VALUE;
+            long newTime = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+                long start = System.nanoTime();
+                runOldLoop(points);
+                long old = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                runFinder(points);
+                long finder = System.nanoTime() - start;
+
+                if (run >= WARMUP_RUNS) {
+                    oldTime = Math.min(oldTime, old);
+                    newTime = Math.min(newTime, finder);
+                }
+            }
+
+            results[i] = String.format("old %.2f us/loop | finder %.2f us/loop", oldTime / 1E3 / TICKS, newTime / 1E3 / TICKS);
+        }
+    }
+
+    @Override
+    public void init_loop() {
+        showResults();
+    }
+
+    @Override
+    public void loop() {
+        showResults();
+    }
+
+    private void showResults() {
+        telemetry.addData("lookahead (mm)", LOOKAHEAD_DISTANCE);
+        for (int i = 0; i < PATH_LENGTHS.length; i++) {
+            telemetry.addData(PATH_LENGTHS[i] + " points", results[i]);
+        }
+    }
+
+    private PathBuffer wavyPath(int numPoints) {
+        PathBuffer points = new PathBuffer(numPoints);
+        double distance = 0;
+        for (int i = 0; i < numPoints; i++) {
+            points.setPosition(i, i * SPACING, 300 * Math.sin(i * SPACING / 600));
+            if (i > 0) {
+                distance += Math.hypot(points.getX(i) - points.getX(i - 1), points.getY(i) - points.getY(i - 1));
+            }
+            points.setDistance(i, distance);
+        }
+        return points;
+    }
+
+    // the robot is stepped evenly along the path and sits 20 mm to the side of this point
+    private int closestIndexAtTick(PathBuffer points, int tick) {
+        return (int) ((long) tick * (points.size() - 1) / TICKS);
+    }
+
+    private void runFinder(PathBuffer points) {
+        LookaheadFinder finder = new LookaheadFinder(points, LOOKAHEAD_DISTANCE);
+        LookaheadPoint lookahead = new LookaheadPoint(points);
+        for (int tick = 0; tick < TICKS; tick++) {
+            int closest = closestIndexAtTick(points, tick);
+            finder.update(points.getX(closest), points.getY(closest) + 20, closest, lookahead);
+        }
+    }
+
+    // the loop both followers ran before LookaheadFinder: every segment from lastIndex to the end, every loop
+    private void runOldLoop(PathBuffer points) {
+        int lastIndex = 0;
+        double currentTValue = 0;
+        for (int tick = 0; tick < TICKS; tick++) {
+            int closest = closestIndexAtTick(points, tick);
+            double robotX = points.getX(closest);
+            double robotY = points.getY(closest) + 20;
+
+            boolean tFound = false;
+            for (int i = lastIndex; i < points.size() - 1; i++) {
+                Double nextTValue = new Double(calculateT(points.getX(i), points.getY(i), points.getX(i + 1), points.getY(i + 1), robotX, robotY));
+                if (!tFound && !nextTValue.isNaN() && (nextTValue + i) > (currentTValue + lastIndex)) {
+                    tFound = true;
+                    currentTValue = nextTValue;
+                    lastIndex = i;
+                }
+            }
+        }
+    }
+
+    private double calculateT(double startX, double startY, double endX, double endY, double robotX, double robotY) {
+        double dX = endX - startX;
+        double dY = endY - startY;
+        double fX = startX - robotX;
+        double fY = startY - robotY;
+
+        double a = dX * dX + dY * dY;
+        double b = 2 * (fX * dX + fY * dY);
+        double c = fX * fX + fY * fY - LOOKAHEAD_DISTANCE * LOOKAHEAD_DISTANCE;
+
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant >= 0) {
+            discriminant = Math.sqrt(discriminant);
+            double t1 = (-b - discriminant) / (2 * a);
+            double t2 = (-b + discriminant) / (2 * a);
+            if (t1 >= 0 && t1 <= 1) {
+                return t1;
+            }
+            if (t2 >= 0 && t2 <= 1) {
+                return t2;
+            }
+        }
+        return Double.NaN;
+    }
+}
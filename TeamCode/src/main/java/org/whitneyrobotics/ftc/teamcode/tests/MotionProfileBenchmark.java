@@ -0,0 +1,106 @@
+package org.whitneyrobotics.ftc.teamcode.tests;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.whitneyrobotics.ftc.teamcode.lib.motion.MotionProfile;
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+
+/**
+ * Times the old PIDFController.velocityAtClosestPoint against the binary search lookup in
+ * MotionProfile on the Control Hub, at a few profile lengths. The old lookup is quadratic, so it
+ * only gets a handful of calls on the long profiles.
+ */
+@TeleOp(name = "Motion Profile Benchmark", group = "tests")
+public class MotionProfileBenchmark extends OpMode {
+
+    private static final int[] PROFILE_LENGTHS = {100, 1000, 10000};
+    // the old lookup reads ~n^2 array elements per call, ~10^8 at 10000 points
+    private static final int[] OLD_LOOKUPS = {200, 10, 1};
+    private static final double DISTANCE = 1500;
+    private static final int LOOKUPS = 2000;
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    private String[] results = new String[PROFILE_LENGTHS.length];
+    // keeps the JIT from throwing the lookups away
+    private double sink;
+
+    @Override
+    public void init() {
+        for (int i = 0; i < PROFILE_LENGTHS.length; i++) {
+            MotionProfile profile = new MotionProfile(0, DISTANCE, PROFILE_LENGTHS[i]);
+            int oldLookups = OLD_LOOKUPS[i];
+
+            long oldTime = Long.MAX_VALUE;
+            long newTime = Long.MAX_VALUE;
+            for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+                long start = System.nanoTime();
+                runOldLookup(profile, oldLookups);
+                long old = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                runNewLookup(profile);
+                long lookup = System.nanoTime() - start;
+
+                if (run >= WARMUP_RUNS) {
+                    oldTime = Math.min(oldTime, old);
+                    newTime = Math.min(newTime, lookup);
+                }
+            }
+
+            results[i] = String.format("old %.2f us/call | binary search %.3f us/call", oldTime / 1E3 / oldLookups, newTime / 1E3 / LOOKUPS);
+        }
+    }
+
+    @Override
+    public void init_loop() {
+        showResults();
+    }
+
+    @Override
+    public void loop() {
+        showResults();
+    }
+
+    private void showResults() {
+        for (int i = 0; i < PROFILE_LENGTHS.length; i++) {
+            telemetry.addData(PROFILE_LENGTHS[i] + " points", results[i]);
+        }
+        telemetry.addData("checksum", sink);
+    }
+
+    private void runNewLookup(MotionProfile profile) {
+        for (int call = 0; call < LOOKUPS; call++) {
+            double position = DISTANCE * call / LOOKUPS;
+            sink += profile.getVelocityAt(position) + profile.getAccelerationAt(position);
+        }
+    }
+
+    private void runOldLookup(MotionProfile profile, int lookups) {
+        for (int call = 0; call < lookups; call++) {
+            sink += oldVelocityAtClosestPoint(profile, DISTANCE * call / lookups);
+        }
+    }
+
+    // the lookup PIDFController used before, including getPoints() rebuilding the array for every element
+    private int oldVelocityAtClosestPoint(MotionProfile profile, double position) {
+        double[] differenceArray = new double[rebuildPoints(profile).length];
+        for (int i = 0; i < rebuildPoints(profile).length; i++) {
+            differenceArray[i] = rebuildPoints(profile)[i] - position;
+        }
+        return Functions.calculateIndexOfSmallestValue(differenceArray);
+    }
+
+    private double[] rebuildPoints(MotionProfile profile) {
+        double[] points = profile.getPoints();
+        double increment = points[1] - points[0];
+        double[] rebuilt = new double[points.length];
+        double previousPos = points[0] - increment;
+        for (int i = 0; i < rebuilt.length; i++) {
+            rebuilt[i] = previousPos + increment;
+            previousPos = rebuilt[i];
+        }
+        return rebuilt;
+    }
+}
@@ -0,0 +1,98 @@
+package org.whitneyrobotics.ftc.teamcode.tests;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathSmoother;
+
+/**
+ * Times the old iterative smoother against PathSmoother on the Control Hub.
+ * Runs once during init; results stay on the driver station until the OpMode is stopped.
+ */
+@TeleOp(name = "Path Smoother Benchmark", group = "tests")
+public class PathSmootherBenchmark extends OpMode {
+
+    private static final int[] PATH_LENGTHS = {25, 50, 100, 200, 400, 800};
+    private static final double WEIGHT_SMOOTH = 0.7;
+    private static final int RUNS = 5;
+    // the old smoother has no cap of its own, so stop it here to keep init from hanging
+    private static final int MAX_ITERATIVE_PASSES = 20000;
+
+    private String[] results = new String[PATH_LENGTHS.length];
+
+    @Override
+    public void init() {
+        for (int i = 0; i < PATH_LENGTHS.length; i++) {
+            double[][] path = zigZag(PATH_LENGTHS[i]);
+
+            long iterativeTime = Long.MAX_VALUE;
+            int passes = 0;
+            long linearTime = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                passes = iterativeSmooth(path[0], path[1], WEIGHT_SMOOTH);
+                iterativeTime = Math.min(iterativeTime, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                PathSmoother.smooth(path[0], WEIGHT_SMOOTH);
+                PathSmoother.smooth(path[1], WEIGHT_SMOOTH);
+                linearTime = Math.min(linearTime, System.nanoTime() - start);
+            }
+
+            results[i] = String.format("iterative %.2f ms (%s passes) | linear %.3f ms",
+                    iterativeTime / 1E6, passes >= MAX_ITERATIVE_PASSES ? "capped at " + passes : passes, linearTime / 1E6);
+        }
+    }
+
+    @Override
+    public void init_loop() {
+        showResults();
+    }
+
+    @Override
+    public void loop() {
+        showResults();
+    }
+
+    private void showResults() {
+        telemetry.addData("weightSmooth", WEIGHT_SMOOTH);
+        for (int i = 0; i < PATH_LENGTHS.length; i++) {
+            telemetry.addData(PATH_LENGTHS[i] + " points", results[i]);
+        }
+    }
+
+    // 80 mm spacing with a 300 mm sideways step every ten points, similar to an injected auto path
+    private double[][] zigZag(int numPoints) {
+        double[][] path = new double[2][numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            path[0][i] = i * 80;
+            path[1][i] = ((i / 10) % 2 == 0) ? 0 : 300;
+        }
+        return path;
+    }
+
+    // the gradient-descent smoother PathGenerator used before PathSmoother, on copies of the input
+    private int iterativeSmooth(double[] origX, double[] origY, double weightSmooth) {
+        double[] x = origX.clone();
+        double[] y = origY.clone();
+        double weightData = 1 - weightSmooth;
+        double tolerance = 0.001;
+
+        int passes = 0;
+        double change = tolerance;
+        while (change >= tolerance && passes < MAX_ITERATIVE_PASSES) {
+            change = 0.0;
+            for (int i = 1; i < x.length - 1; i++) {
+                double aux = x[i];
+                x[i] += weightData * (origX[i] - x[i]) + weightSmooth * (x[i - 1] + x[i + 1] - (2.0 * x[i]));
+                change += Math.abs(aux - x[i]);
+
+                aux = y[i];
+                y[i] += weightData * (origY[i] - y[i]) + weightSmooth * (y[i - 1] + y[i + 1] - (2.0 * y[i]));
+                change += Math.abs(aux - y[i]);
+            }
+            passes++;
+        }
+        return passes;
+    }
+}
@@ -0,0 +1,158 @@
+package org.whitneyrobotics.ftc.teamcode.tests;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp;
+
+import org.whitneyrobotics.ftc.teamcode.lib.control.ControlConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.control.LoopClock;
+import org.whitneyrobotics.ftc.teamcode.lib.control.RelayAutoTuner;
+import org.whitneyrobotics.ftc.teamcode.lib.util.Functions;
+import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
+import org.whitneyrobotics.ftc.teamcode.lib.util.Toggler;
+import org.whitneyrobotics.ftc.teamcode.lib.util.TunedGains;
+import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImpl;
+
+/**
+ * Tunes the rotate controller or the slides' velocity loop with a {@link RelayAutoTuner} and
+ * saves the chosen gains to {@link TunedGains}, which AutoOp and WHSTeleOp load at init.
+ * <p>
+ * Rotate turns the robot back and forth in place around the heading it started at. Slides first
+ * go up to level 2, then the relay pushes them up and down around the gravity feedforward; the
+ * run stops if they get near either end. In init, pick the loop with the dpad. Once the run is
+ * done, pick a rule with the dpad and press A to save.
+ */
+@TeleOp(name = "Relay Auto Tune", group = "tests")
+public class RelayAutoTune extends OpMode {
+
+    private static final String[] LOOPS = {"ROTATE", "SLIDE_VELOCITY"};
+    private static final int ROTATE = 0;
+
+    private static final double ROTATE_AMPLITUDE = 0.35;   // power
+    private static final double ROTATE_HYSTERESIS = 1;     // degrees
+    private static final double SLIDE_AMPLITUDE = 0.15;    // power
+    private static final double SLIDE_HYSTERESIS = 20;     // ticks/s
+    private static final double SLIDE_LOWER_LIMIT = 300;   // ticks
+    private static final double SLIDE_UPPER_LIMIT = 2600;  // ticks
+    private static final double TIMEOUT = 20;              // s
+
+    private WHSRobotImpl robot;
+    private LoopClock clock = new LoopClock();
+    private Toggler loopSelector = new Toggler(LOOPS.length);
+    private Toggler ruleSelector = new Toggler(RelayAutoTuner.Rule.values().length);
+
+    private RelayAutoTuner tuner;
+    private double startHeading;
+    private boolean raisingSlides;
+    private String status = "";
+    private boolean saved = false;
+    private boolean aborted = false;
+
+    @Override
+    public void init() {
+        robot = new WHSRobotImpl(hardwareMap);
+        robot.setControlClock(clock);
+    }
+
+    @Override
+    public void init_loop() {
+        loopSelector.changeState(gamepad1.dpad_right, gamepad1.dpad_left);
+        telemetry.addData("Loop to tune (dpad left/right)", LOOPS[loopSelector.currentState()]);
+    }
+
+    @Override
+    public void start() {
+        clock.update();
+        if (loopSelector.currentState() == ROTATE) {
+            robot.estimateHeading();
+            startHeading = robot.getCoordinate().getHeading();
+            tuner = new RelayAutoTuner(0, 0, ROTATE_AMPLITUDE, ROTATE_HYSTERESIS, TIMEOUT, clock);
+        } else {
+            raisingSlides = true;
+            tuner = new RelayAutoTuner(0, RobotConstants.SLIDE_KG, SLIDE_AMPLITUDE, SLIDE_HYSTERESIS, TIMEOUT, clock);
+        }
+    }
+
+    @Override
+    public void loop() {
+        clock.update();
+        if (aborted) {
+            stopMotors();
+        } else if (!tuner.isFinished()) {
+            run();
+        } else {
+            stopMotors();
+            showResults();
+        }
+        telemetry.addData("Loop", LOOPS[loopSelector.currentState()]);
+        telemetry.addData("Status", status);
+    }
+
+    private void run() {
+        if (loopSelector.currentState() == ROTATE) {
+            robot.estimateHeading();
+            double heading = Functions.normalizeAngle(robot.getCoordinate().getHeading() - startHeading);
+            double power = tuner.calculate(heading);
+            robot.drivetrain.operateLeft(power);
+            robot.drivetrain.operateRight(-power);
+            status = "turning, heading " + heading;
+            return;
+        }
+
+        if (raisingSlides) {
+            robot.outtake.operateWithoutGamepad(2);
+            raisingSlides = robot.outtake.slidingInProgress;
+            status = "raising slides";
+            return;
+        }
+        double position = robot.outtake.getSlidesPosition();
+        if (position < SLIDE_LOWER_LIMIT || position > SLIDE_UPPER_LIMIT) {
+            stopMotors();
+            status = "slides left the safe range at " + position + "; lower SLIDE_AMPLITUDE and restart";
+            aborted = true;
+            return;
+        }
+        robot.outtake.operateSlides(tuner.calculate(robot.outtake.getSlidesVelocity()));
+        status = "oscillating, position " + position;
+    }
+
+    private void showResults() {
+        if (tuner.hasFailed()) {
+            status = "no steady oscillation; try a larger amplitude";
+            return;
+        }
+        status = "done";
+        telemetry.addData("Ku", tuner.getUltimateGain());
+        telemetry.addData("Tu (s)", tuner.getUltimatePeriod());
+
+        ruleSelector.changeState(gamepad1.dpad_down, gamepad1.dpad_up);
+        RelayAutoTuner.Rule[] rules = RelayAutoTuner.Rule.values();
+        for (int i = 0; i < rules.length; i++) {
+            ControlConstants gains = tuner.getGains(rules[i], getOutputScale());
+            telemetry.addLine(String.format("%s %s  kP %.5f kI %.5f kD %.5f", i == ruleSelector.currentState() ? ">" : " ", rules[i], gains.kP, gains.kI, gains.kD));
+        }
+        if (gamepad1.a && !saved) {
+            TunedGains.save(LOOPS[loopSelector.currentState()], tuner.getGains(rules[ruleSelector.currentState()], getOutputScale()));
+            saved = true;
+        }
+        telemetry.addLine(saved ? "Saved to " + TunedGains.FILE_NAME : "Press A to save the selected rule.");
+    }
+
+    // power per unit of controller output between the controller and the motors
+    private double getOutputScale() {
+        if (loopSelector.currentState() == ROTATE) {
+            // rotateToTarget maps an output of 0 to 180 onto rotate_min to rotate_max
+            return (RobotConstants.rotate_max - RobotConstants.rotate_min) / 180;
+        }
+        return 1;
+    }
+
+    private void stopMotors() {
+        robot.drivetrain.operate(0, 0);
+        robot.outtake.operateSlides(0);
+    }
+
+    @Override
+    public void stop() {
+        stopMotors();
+    }
+}
@@ -3,6 +3,7 @@ package org.whitneyrobotics.ftc.teamcode.tests;
 import com.qualcomm.robotcore.eventloop.opmode.Autonomous;
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 
+import org.whitneyrobotics.ftc.teamcode.lib.control.TunableRegistry;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.util.RobotConstants;
 import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImplOld;
@@ -13,6 +14,7 @@ import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImplOld;
 @Autonomous(name = "RotateToTargetTest", group = "tests")
 public class RotateToTargetTest extends OpMode {
     WHSRobotImplOld robot;
+    private TunableRegistry tunables = new TunableRegistry();
 //    Telemetry dashboardTelemetry = dashboard.getTelemetry();
     @Override
     public void init() {
@@ -23,6 +25,8 @@ public class RotateToTargetTest extends OpMode {
 
         robot = new WHSRobotImplOld(hardwareMap);
         robot.setInitialCoordinate(new Coordinate(0, 0, 0));
+        RobotConstants.bindTunables(tunables);
+        tunables.start();
       //  telemetry.setMsTransmissionInterval(10);
     }
 
@@ -33,7 +37,7 @@ public class RotateToTargetTest extends OpMode {
 
     @Override
     public void loop() {
-        robot.rotateController.setConstants(RobotConstants.ROTATE_CONSTANTS);
+        tunables.update();
 
         if(robot.rotateToTargetInProgress()) {
             robot.rotateToTarget(RobotConstants.rotateTestAngle, false);//RobotConstants.rotateOrientation);
@@ -63,4 +67,9 @@ public class RotateToTargetTest extends OpMode {
         telemetry.addData("Drive Derivative", robot.driveController.getDerivative());
 
     }
+
+    @Override
+    public void stop() {
+        tunables.shutdown();
+    }
 }
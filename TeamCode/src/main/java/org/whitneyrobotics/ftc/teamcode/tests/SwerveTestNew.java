@@ -8,9 +8,8 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import org.firstinspires.ftc.robotcore.external.Telemetry;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Coordinate;
 import org.whitneyrobotics.ftc.teamcode.lib.geometry.Position;
-import org.whitneyrobotics.ftc.teamcode.lib.geometry.SwerveWaypoint;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.FollowerConstants;
-import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathGenerator;
+import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.PathCache;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePath;
 import org.whitneyrobotics.ftc.teamcode.lib.purepursuit.swervetotarget.SwervePathGenerationConstants;
 import org.whitneyrobotics.ftc.teamcode.subsys.WHSRobotImplOld;
@@ -42,7 +41,7 @@ public class SwerveTestNew extends OpMode {
         posArray.add(p1);
         robot = new WHSRobotImplOld(hardwareMap);
         robot.setInitialCoordinate(startingCoordinate);
-        path = PathGenerator.generateSwervePath(posArray, followerConstants, pathGenerationConstants);
+        path = PathCache.onRobot().getSwervePath(posArray, followerConstants, pathGenerationConstants);
         robot.updatePath(path);
         dashboardTelemetry.setMsTransmissionInterval(10);
     }
@@ -52,8 +51,8 @@ public class SwerveTestNew extends OpMode {
         robot.swerveToTarget();
         packet.put("X", robot.getCoordinate().getX());
         packet.put("Y", robot.getCoordinate().getY());
-        for (SwerveWaypoint waypoint: path.getWaypoints()){
-            packet.addLine("X: " + waypoint.getPosition().getX() + " Y: " + waypoint.getPosition().getY() + " Velocity: " + waypoint.getTangentialVelocity());
+        for (int i = 0; i < path.size(); i++){
+            packet.addLine("X: " + path.getX(i) + " Y: " + path.getY(i) + " Velocity: " + path.getTargetVelocityAtIndex(i));
         }
         packet.put("Closest Index", robot.swerveFollower.indexOfClosest);
         dashboard.sendTelemetryPacket(packet);
@@ -0,0 +1,96 @@
+package org.whitneyrobotics.ftc.teamcode.lib.control;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the relay experiment against {@link FirstOrderDeadTimePlant}s, whose ultimate gain and
+ * period are known exactly, and pins how far the describing-function estimate lands from them.
+ */
+public class RelayAutoTunerTest {
+
+    private static final double SAMPLE_PERIOD = 0.005;
+    private static final double TIMEOUT = 60;
+    // how far the measured/exact ratios may move before the class doc needs rewording
+    private static final double RATIO_TOLERANCE = 0.03;
+
+    @Test
+    public void lagDominatedPlantReadsAQuarterLow() {
+        FirstOrderDeadTimePlant plant = new FirstOrderDeadTimePlant(2, 0.5, 0.08, SAMPLE_PERIOD);
+        RelayAutoTuner tuner = tuneToResult(plant, 2);
+        assertEquals("Ku ratio", 0.73, tuner.getUltimateGain() / plant.getUltimateGain(), RATIO_TOLERANCE);
+        assertEquals("Tu ratio", 1.13, tuner.getUltimatePeriod() / plant.getUltimatePeriod(), RATIO_TOLERANCE);
+    }
+
+    @Test
+    public void slowerLagDominatedPlantReadsLow() {
+        FirstOrderDeadTimePlant plant = new FirstOrderDeadTimePlant(1, 2, 0.5, SAMPLE_PERIOD);
+        RelayAutoTuner tuner = tuneToResult(plant, 1);
+        assertEquals("Ku ratio", 0.77, tuner.getUltimateGain() / plant.getUltimateGain(), RATIO_TOLERANCE);
+        assertEquals("Tu ratio", 1.06, tuner.getUltimatePeriod() / plant.getUltimatePeriod(), RATIO_TOLERANCE);
+    }
+
+    @Test
+    public void deadTimeDominatedPlantReadsHigh() {
+        FirstOrderDeadTimePlant plant = new FirstOrderDeadTimePlant(1, 0.05, 0.5, SAMPLE_PERIOD);
+        RelayAutoTuner tuner = tuneToResult(plant, 1);
+        assertEquals("Ku ratio", 1.22, tuner.getUltimateGain() / plant.getUltimateGain(), RATIO_TOLERANCE);
+        assertEquals("Tu ratio", 0.98, tuner.getUltimatePeriod() / plant.getUltimatePeriod(), RATIO_TOLERANCE);
+    }
+
+    @Test
+    public void everyRuleGivesPositiveGains() {
+        RelayAutoTuner tuner = tuneToResult(new FirstOrderDeadTimePlant(2, 0.5, 0.08, SAMPLE_PERIOD), 2);
+        for (RelayAutoTuner.Rule rule : RelayAutoTuner.Rule.values()) {
+            ControlConstants gains = tuner.getGains(rule);
+            assertTrue(rule + " kP", gains.kP > 0);
+            assertTrue(rule + " kI", gains.kI > 0);
+            assertTrue(rule + " kD", gains.kD > 0);
+        }
+    }
+
+    @Test
+    public void outputScaleDividesTheGains() {
+        RelayAutoTuner tuner = tuneToResult(new FirstOrderDeadTimePlant(2, 0.5, 0.08, SAMPLE_PERIOD), 2);
+        ControlConstants direct = tuner.getGains(RelayAutoTuner.Rule.ZIEGLER_NICHOLS);
+        ControlConstants scaled = tuner.getGains(RelayAutoTuner.Rule.ZIEGLER_NICHOLS, 4);
+        assertEquals(direct.kP / 4, scaled.kP, 1E-12);
+        assertEquals(direct.kI / 4, scaled.kI, 1E-12);
+        assertEquals(direct.kD / 4, scaled.kD, 1E-12);
+    }
+
+    @Test
+    public void plantThatNeverOscillatesHasNoResult() {
+        // no gain: the measurement never crosses the setpoint, so the relay never switches
+        RelayAutoTuner tuner = tune(new FirstOrderDeadTimePlant(0, 0.5, 0.08, SAMPLE_PERIOD), 1);
+        assertTrue(tuner.hasFailed());
+        assertEquals(0, tuner.getMeasuredCycles());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noGainsWithoutAResult() {
+        tune(new FirstOrderDeadTimePlant(0, 0.5, 0.08, SAMPLE_PERIOD), 1).getGains(RelayAutoTuner.Rule.ZIEGLER_NICHOLS);
+    }
+
+    // swings the plant evenly either side of 1, with bias holding it there
+    private static RelayAutoTuner tune(FirstOrderDeadTimePlant plant, double plantGain) {
+        FakeClock clock = new FakeClock();
+        RelayAutoTuner tuner = new RelayAutoTuner(1, 1 / plantGain, 0.5 / plantGain, 0.01, TIMEOUT, clock);
+        double output = 0;
+        while (!tuner.isFinished()) {
+            output = plant.step(tuner.calculate(output));
+            clock.advance(SAMPLE_PERIOD);
+        }
+        return tuner;
+    }
+
+    private static RelayAutoTuner tuneToResult(FirstOrderDeadTimePlant plant, double plantGain) {
+        RelayAutoTuner tuner = tune(plant, plantGain);
+        assertFalse("no steady oscillation within the timeout", tuner.hasFailed());
+        assertEquals(RelayAutoTuner.MEASURED_CYCLES, tuner.getMeasuredCycles());
+        return tuner;
+    }
+}
@@ -0,0 +1,100 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives simulated robots through turns with slipping encoders, a biased IMU and one position
+ * fix a second, and checks the filter stays honest about how sure it is: every run ends within
+ * 3 sigma of the truth, and the covariance stays positive definite the whole way.
+ */
+public class PoseFilterTest {
+
+    private static final PoseFilter.NoiseModel NOISE = new PoseFilter.NoiseModel(0.05, 0.05, 0.2, 0.02, 0.2);
+    private static final double DT = 0.01;
+    private static final int STEPS = 3000;
+
+    @Test
+    public void tenSeedsEndWithinThreeSigma() {
+        for (int seed = 542; seed < 552; seed++) {
+            simulate(seed);
+        }
+    }
+
+    // one 30 s run
+    private static void simulate(long seed) {
+        Random random = new Random(seed);
+        PoseFilter filter = new PoseFilter(NOISE);
+        filter.setPose(0, 0, 0, 1, 0.5);
+
+        double trueX = 0, trueY = 0, trueHeading = 0;
+        double odometryX = 0, odometryY = 0, odometryHeading = 0;
+        double gyroBias = 0.05 * random.nextGaussian();   // deg/s
+        for (int step = 0; step < STEPS; step++) {
+            double time = step * DT;
+            double speed = 600 + 300 * Math.sin(time);               // mm/s
+            double turnRate = 120 * Math.sin(time * 0.7);             // deg/s
+            double distance = speed * DT;
+            double turn = turnRate * DT;
+            trueX += distance * Math.cos(Math.toRadians(trueHeading + turn / 2));
+            trueY += distance * Math.sin(Math.toRadians(trueHeading + turn / 2));
+            trueHeading += turn;
+
+            // encoders read long when turning hard; the IMU's yaw is its biased gyro integrated
+            double measuredDistance = distance * (1 + 0.03 * random.nextGaussian());
+            double encoderTurn = turn * (1.15 + 0.1 * random.nextGaussian());
+            double imuTurn = (turnRate + gyroBias) * DT + 0.002 * random.nextGaussian();
+
+            odometryX += measuredDistance * Math.cos(Math.toRadians(odometryHeading + encoderTurn / 2));
+            odometryY += measuredDistance * Math.sin(Math.toRadians(odometryHeading + encoderTurn / 2));
+            odometryHeading += encoderTurn;
+
+            filter.predict(measuredDistance, encoderTurn, imuTurn, DT);
+            if (step % 100 == 99) {
+                filter.correctPosition(trueX + 15 * random.nextGaussian(), trueY + 15 * random.nextGaussian(), 15);
+            }
+            assertPositiveDefinite("seed " + seed + " step " + step, filter);
+        }
+
+        String run = "seed " + seed;
+        double filterError = Math.hypot(filter.getX() - trueX, filter.getY() - trueY);
+        double odometryError = Math.hypot(odometryX - trueX, odometryY - trueY);
+        double filterHeadingError = Math.abs(angleBetween(filter.getHeading(), trueHeading));
+        // position error is two dimensional, so compare it with both axes' sigma combined
+        double positionSigma = Math.sqrt(filter.getCovariance(0, 0) + filter.getCovariance(1, 1));
+        double headingSigma = filter.getHeadingStdDev();
+        assertTrue(run + ": filter off " + filterError + " mm, sigma " + positionSigma, filterError <= 3 * positionSigma);
+        assertTrue(run + ": filter off " + filterHeadingError + " deg, sigma " + headingSigma, filterHeadingError <= 3 * headingSigma);
+        assertTrue(run + ": filter off " + filterError + " mm, odometry " + odometryError, filterError < odometryError);
+    }
+
+    // symmetric with every leading principal minor positive
+    private static void assertPositiveDefinite(String where, PoseFilter filter) {
+        double[] p = new double[9];
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                p[row * 3 + col] = filter.getCovariance(row, col);
+            }
+        }
+        for (int row = 0; row < 3; row++) {
+            for (int col = row + 1; col < 3; col++) {
+                double scale = Math.sqrt(p[row * 4] * p[col * 4]);
+                assertTrue(where + ": covariance not symmetric", Math.abs(p[row * 3 + col] - p[col * 3 + row]) <= 1E-9 * scale);
+            }
+        }
+        double minor2 = p[0] * p[4] - p[1] * p[3];
+        double minor3 = p[0] * (p[4] * p[8] - p[5] * p[7])
+                - p[1] * (p[3] * p[8] - p[5] * p[6])
+                + p[2] * (p[3] * p[7] - p[4] * p[6]);
+        assertTrue(where + ": covariance not positive definite", p[0] > 0 && minor2 > 0 && minor3 > 0);
+    }
+
+    // degrees from b to a, -180 to 180
+    private static double angleBetween(double a, double b) {
+        double radians = Math.toRadians(a - b);
+        return Math.toDegrees(Math.atan2(Math.sin(radians), Math.cos(radians)));
+    }
+}
@@ -0,0 +1,116 @@
+package org.whitneyrobotics.ftc.teamcode.lib.localization;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Drives a simulated robot along arcs with steady forward, left and turn speeds, whose end pose
+ * is known exactly, and checks ThreeWheelOdometry lands on it however few updates it gets.
+ */
+public class ThreeWheelOdometryTest {
+
+    private static final double MM_PER_TICK = TrackingWheel.mmPerTick(24, 8192, 1);
+    private static final TrackingWheel LEFT = new TrackingWheel(0, 180, 0, MM_PER_TICK);
+    private static final TrackingWheel RIGHT = new TrackingWheel(0, -180, 0, MM_PER_TICK);
+    private static final TrackingWheel BACK = new TrackingWheel(-100, 0, 90, MM_PER_TICK);
+    private static final double TOLERANCE = 1E-6;
+
+    @Test
+    public void straightForward() {
+        checkArc(1000, 0, 0, 2, 50);
+    }
+
+    @Test
+    public void straightStrafe() {
+        checkArc(0, 600, 0, 2, 50);
+    }
+
+    @Test
+    public void turnInPlace() {
+        checkArc(0, 0, 180, 2, 10);
+    }
+
+    @Test
+    public void fullCircle() {
+        checkArc(800, 0, 90, 4, 100);
+    }
+
+    @Test
+    public void strafingArcInFewSteps() {
+        checkArc(500, 300, -135, 4, 7);
+    }
+
+    @Test
+    public void wholeArcInOneStep() {
+        checkArc(700, -200, 400, 3, 1);
+    }
+
+    @Test
+    public void wheelsWithDifferentScales() {
+        TrackingWheel left = new TrackingWheel(0, 150, 0, TrackingWheel.mmPerTick(24, 8192, 1));
+        TrackingWheel right = new TrackingWheel(0, -170, 0, -TrackingWheel.mmPerTick(25.4, 2048, 1));
+        TrackingWheel back = new TrackingWheel(-90, 10, 270, TrackingWheel.mmPerTick(19, 4096, 1));
+        checkArc(new TrackingWheel[]{left, right, back}, 650, 250, 75, 3, 13);
+    }
+
+    @Test
+    public void firstUpdateOnlyRecordsTheEncoders() {
+        ThreeWheelOdometry odometry = new ThreeWheelOdometry(LEFT, RIGHT, BACK);
+        odometry.setPose(100, -50, 30);
+        odometry.update(12345, -678, 910);
+        assertEquals(100, odometry.getX(), TOLERANCE);
+        assertEquals(-50, odometry.getY(), TOLERANCE);
+        assertEquals(30, odometry.getHeading(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWheelsThatCantSeeTurning() {
+        // all three parallel and in line: no way to tell a turn from a strafe
+        new ThreeWheelOdometry(new TrackingWheel(0, 0, 0, 1), new TrackingWheel(100, 0, 0, 1), new TrackingWheel(-100, 0, 0, 1));
+    }
+
+    private static void checkArc(double forward, double left, double turnDegrees, double time, int steps) {
+        checkArc(new TrackingWheel[]{LEFT, RIGHT, BACK}, forward, left, turnDegrees, time, steps);
+    }
+
+    /**
+     * @param forward     mm/s in the robot frame
+     * @param left        mm/s in the robot frame
+     * @param turnDegrees deg/s
+     */
+    private static void checkArc(TrackingWheel[] wheels, double forward, double left, double turnDegrees, double time, int steps) {
+        double turn = Math.toRadians(turnDegrees);
+        ThreeWheelOdometry odometry = new ThreeWheelOdometry(wheels[0], wheels[1], wheels[2]);
+        odometry.setPose(0, 0, 0);
+        double[] ticks = new double[3];
+        odometry.update(ticks[0], ticks[1], ticks[2]);
+        double dt = time / steps;
+        for (int step = 0; step < steps; step++) {
+            for (int i = 0; i < 3; i++) {
+                double angle = Math.toRadians(wheels[i].angle);
+                // the contact point's speed along the wheel holds steady when the robot's does
+                double rate = forward * Math.cos(angle) + left * Math.sin(angle)
+                        + turn * (wheels[i].x * Math.sin(angle) - wheels[i].y * Math.cos(angle));
+                ticks[i] += rate * dt / wheels[i].mmPerTick;
+            }
+            odometry.update(ticks[0], ticks[1], ticks[2]);
+        }
+
+        double theta = turn * time;
+        double expectedX;
+        double expectedY;
+        if (turn == 0) {
+            expectedX = forward * time;
+            expectedY = left * time;
+        } else {
+            expectedX = (forward * Math.sin(theta) - left * (1 - Math.cos(theta))) / turn;
+            expectedY = (forward * (1 - Math.cos(theta)) + left * Math.sin(theta)) / turn;
+        }
+        double headingError = Math.toDegrees(Math.atan2(Math.sin(Math.toRadians(odometry.getHeading()) - theta),
+                Math.cos(Math.toRadians(odometry.getHeading()) - theta)));
+        assertEquals("x", expectedX, odometry.getX(), TOLERANCE);
+        assertEquals("y", expectedY, odometry.getY(), TOLERANCE);
+        assertEquals("heading", 0, headingError, TOLERANCE);
+    }
+}